@@ -0,0 +1,65 @@
+package gg.moonflower.molangcompiler.benchmark;
+
+import gg.moonflower.molangcompiler.api.MolangCompiler;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.core.ast.Node;
+import gg.moonflower.molangcompiler.core.compiler.MolangLexer;
+import gg.moonflower.molangcompiler.core.compiler.MolangParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stage of turning source into an expression.
+ *
+ * @author Ocelot
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompileBenchmark {
+
+    @Param({"simple", "query", "loop", "function", "animation"})
+    public String expression;
+
+    private String source;
+    private MolangLexer.Token[] tokens;
+    private MolangCompiler compiler;
+
+    @Setup(Level.Trial)
+    public void setup() throws MolangSyntaxException {
+        this.source = Expressions.get(this.expression);
+        this.tokens = MolangLexer.createTokens(this.source);
+    }
+
+    @Setup(Level.Iteration)
+    public void createCompiler() {
+        // A new compiler every iteration lets the classes generated by the last one be unloaded
+        this.compiler = MolangCompiler.create();
+    }
+
+    @Benchmark
+    public MolangLexer.Token[] lex() throws MolangSyntaxException {
+        return MolangLexer.createTokens(this.source);
+    }
+
+    @Benchmark
+    public Node parse() throws MolangSyntaxException {
+        return MolangParser.parseTokens(this.tokens);
+    }
+
+    @Benchmark
+    public MolangExpression compile() throws MolangSyntaxException {
+        // Compilers intern equivalent expressions, so a new compiler is needed to generate a class every time
+        return MolangCompiler.create().compile(this.source);
+    }
+
+    @Benchmark
+    public MolangExpression compileInterned() throws MolangSyntaxException {
+        return this.compiler.compile(this.source);
+    }
+}
@@ -0,0 +1,40 @@
+package gg.moonflower.molangcompiler.benchmark;
+
+import gg.moonflower.molangcompiler.api.MolangCompiler;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.MolangRuntime;
+import gg.moonflower.molangcompiler.api.exception.MolangException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures evaluating a single compiled expression against a {@link MolangRuntime}.
+ *
+ * @author Ocelot
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluateBenchmark {
+
+    @Param({"constant", "query", "loop", "function", "coalesce", "animation"})
+    public String expression;
+
+    private MolangExpression compiled;
+    private MolangRuntime runtime;
+
+    @Setup(Level.Trial)
+    public void setup() throws MolangException {
+        this.compiled = MolangCompiler.create().compile(Expressions.get(this.expression));
+        this.runtime = Expressions.createRuntime();
+    }
+
+    @Benchmark
+    public float evaluate() throws MolangException {
+        return this.runtime.resolve(this.compiled);
+    }
+}
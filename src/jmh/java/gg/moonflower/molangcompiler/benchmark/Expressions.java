@@ -0,0 +1,51 @@
+package gg.moonflower.molangcompiler.benchmark;
+
+import gg.moonflower.molangcompiler.api.MolangRuntime;
+
+/**
+ * Representative expressions shared by all benchmarks.
+ *
+ * @author Ocelot
+ */
+final class Expressions {
+
+    private Expressions() {
+    }
+
+    /**
+     * @param name The name of the expression
+     * @return The source of the expression
+     */
+    static String get(String name) {
+        return switch (name) {
+            case "constant", "simple" -> "math.sin(30) * 4 + 2";
+            case "query" -> "q.a * q.b + q.c * q.d - q.e / q.f + q.g * q.h";
+            case "loop" -> "t.x = 0; loop(16, { t.x = t.x + q.a; }); return t.x;";
+            case "function" -> "q.pick(q.a) + q.pick(q.b) * math.clamp(q.c, 0, 1)";
+            case "coalesce" -> "(v.missing ?? q.a) + (v.speed ?? 1)";
+            case "animation" -> "math.sin(q.anim_time * 180) * 12.5 + (q.is_moving ? math.cos(q.anim_time * 360) * 4 : 0) - q.head_x_rotation * 0.5";
+            default -> throw new IllegalArgumentException("Unknown expression: " + name);
+        };
+    }
+
+    /**
+     * @return A runtime with every value the expressions read
+     */
+    static MolangRuntime createRuntime() {
+        MolangRuntime.Builder builder = MolangRuntime.runtime();
+        builder.setQuery("a", 1.5F);
+        builder.setQuery("b", 5.5F);
+        builder.setQuery("c", 0.5F);
+        builder.setQuery("d", 3.5F);
+        builder.setQuery("e", 1.5F);
+        builder.setQuery("f", 6.5F);
+        builder.setQuery("g", 8.5F);
+        builder.setQuery("h", 3.5F);
+        builder.setQuery("anim_time", 0.25F);
+        builder.setQuery("is_moving", 1.0F);
+        builder.setQuery("head_x_rotation", 12.0F);
+        builder.setQuery("pick", 1, context -> context.get(0) * 2);
+        builder.setVariable("speed", 2.0F);
+        return builder.create();
+    }
+}
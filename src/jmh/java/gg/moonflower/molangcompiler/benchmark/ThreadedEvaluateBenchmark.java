@@ -0,0 +1,88 @@
+package gg.moonflower.molangcompiler.benchmark;
+
+import gg.moonflower.molangcompiler.api.MolangCompiler;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.MolangRuntime;
+import gg.moonflower.molangcompiler.api.MolangScheduler;
+import gg.moonflower.molangcompiler.api.exception.MolangException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how evaluation scales when one compiled expression is shared between threads that each own a runtime.
+ *
+ * @author Ocelot
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThreadedEvaluateBenchmark {
+
+    private static final int ENTITIES = 4096;
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        public MolangExpression expression;
+        public MolangRuntime template;
+        public MolangScheduler scheduler;
+        public MolangExpression[] expressions;
+        public MolangRuntime[] runtimes;
+        public float[] output;
+
+        @Setup(Level.Trial)
+        public void setup() throws MolangException {
+            this.expression = MolangCompiler.create().compile(Expressions.get("animation"));
+            this.template = Expressions.createRuntime();
+            this.scheduler = MolangScheduler.create();
+
+            this.expressions = new MolangExpression[ENTITIES];
+            this.runtimes = new MolangRuntime[ENTITIES];
+            this.output = new float[ENTITIES];
+            Arrays.fill(this.expressions, this.expression);
+            for (int i = 0; i < ENTITIES; i++) {
+                this.runtimes[i] = this.template.layer();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Local {
+
+        public MolangRuntime runtime;
+
+        @Setup(Level.Trial)
+        public void setup(Shared shared) {
+            this.runtime = shared.template.layer();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public float oneThread(Shared shared, Local local) throws MolangException {
+        return local.runtime.resolve(shared.expression);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public float fourThreads(Shared shared, Local local) throws MolangException {
+        return local.runtime.resolve(shared.expression);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public float maxThreads(Shared shared, Local local) throws MolangException {
+        return local.runtime.resolve(shared.expression);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public float[] scheduler(Shared shared) throws MolangException {
+        shared.scheduler.evaluate(shared.expressions, shared.runtimes, shared.output);
+        return shared.output;
+    }
+}
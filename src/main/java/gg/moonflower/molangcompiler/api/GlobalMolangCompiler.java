@@ -37,6 +37,7 @@ public final class GlobalMolangCompiler {
 
     /**
      * Deletes the current instance of the compiler to allow compiled expression classes to be garbage collected.
+     * Full class loaders are already retired automatically, so this is only needed to release every class at once.
      */
     public static void clear() {
         GLOBAL_COMPILERS.clear();
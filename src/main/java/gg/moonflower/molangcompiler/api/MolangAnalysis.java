@@ -0,0 +1,54 @@
+package gg.moonflower.molangcompiler.api;
+
+import java.util.Set;
+
+/**
+ * Information about a MoLang expression that is known without running it.
+ *
+ * @author Ocelot
+ * @see MolangCompiler#analyze(String)
+ * @since 3.2.0
+ */
+public interface MolangAnalysis {
+
+    /**
+     * Retrieves every value the expression reads from an environment in the form <code>object.name</code>.
+     * This includes both variables and functions. Temp variables are not included and built-in aliases such as <code>q</code> are expanded.
+     *
+     * @return All values the expression reads
+     */
+    Set<String> getReads();
+
+    /**
+     * Retrieves every value the expression assigns in the form <code>object.name</code>. Temp variables are not included.
+     *
+     * @return All values the expression writes
+     */
+    Set<String> getWrites();
+
+    /**
+     * Retrieves every function the expression calls in the form <code>object.name</code>. Functions from the <code>math</code> library are included.
+     *
+     * @return All functions the expression calls
+     */
+    Set<String> getCalls();
+
+    /**
+     * @return Whether the expression can return a different value every time it is run, for example by calling <code>math.random</code>
+     */
+    boolean usesRandom();
+
+    /**
+     * @return Whether the expression contains a <code>loop</code>
+     */
+    boolean hasLoops();
+
+    /**
+     * <p>Estimates how expensive the expression is to run. Every operation, read, and write costs about one unit and function calls cost more.
+     * Every branch is counted, and loops multiply the cost of their body by the number of iterations if it is known.</p>
+     * <p>The value is only meant to compare expressions with each other.</p>
+     *
+     * @return The estimated cost of running the expression once
+     */
+    int getCost();
+}
@@ -0,0 +1,46 @@
+package gg.moonflower.molangcompiler.api;
+
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+
+import java.util.List;
+
+/**
+ * <p>An expression compiled to be evaluated for many rows of inputs at once.</p>
+ * <p>Inputs are provided as one column array per input variable, and every row writes its result into the output array.
+ * Any variable that is not an input is read from the environment like a normal {@link MolangExpression}.</p>
+ *
+ * @author Ocelot
+ * @see MolangCompiler#compileBatch(String, String...)
+ * @since 3.2.0
+ */
+public interface MolangBatchExpression {
+
+    /**
+     * @return The names of the variables read from input columns, in the order columns must be passed
+     */
+    List<String> getInputs();
+
+    /**
+     * Evaluates the expression for rows <code>offset</code> to <code>offset + count</code>.
+     *
+     * @param environment The environment to execute in
+     * @param inputs      The input columns. There must be one column for each of {@link #getInputs()}
+     * @param output      The array to write the result of each row into
+     * @param offset      The first row to evaluate
+     * @param count       The number of rows to evaluate
+     * @throws MolangRuntimeException If any error occurs when resolving the values or the arrays are too small
+     */
+    void evaluate(MolangEnvironment environment, float[][] inputs, float[] output, int offset, int count) throws MolangRuntimeException;
+
+    /**
+     * Evaluates the expression for every row in the output array.
+     *
+     * @param environment The environment to execute in
+     * @param inputs      The input columns. There must be one column for each of {@link #getInputs()}
+     * @param output      The array to write the result of each row into
+     * @throws MolangRuntimeException If any error occurs when resolving the values or the arrays are too small
+     */
+    default void evaluate(MolangEnvironment environment, float[][] inputs, float[] output) throws MolangRuntimeException {
+        this.evaluate(environment, inputs, output, 0, output.length);
+    }
+}
@@ -0,0 +1,64 @@
+package gg.moonflower.molangcompiler.api;
+
+import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Receives a report after every expression a {@link MolangCompiler} compiles, whether it succeeded or not.
+ * Listeners are called on the thread that compiled the expression.
+ *
+ * @author Ocelot
+ * @see MolangCompiler#addListener(MolangCompilationListener)
+ * @since 3.2.0
+ */
+@FunctionalInterface
+public interface MolangCompilationListener {
+
+    /**
+     * Called after an expression is compiled or fails to compile.
+     *
+     * @param report Information about the compilation
+     */
+    void onCompiled(Report report);
+
+    /**
+     * <p>The time spent in each stage of compiling an expression and the size of the result.</p>
+     * <p>Stages that were not reached because of an error, or skipped because the expression was constant, have a duration of <code>0</code>.</p>
+     *
+     * @param source        The source that was compiled
+     * @param lexNanos      The time spent splitting the source into tokens
+     * @param parseNanos    The time spent parsing tokens into an expression tree
+     * @param generateNanos The time spent generating bytecode from the tree
+     * @param writeNanos    The time spent computing frames and writing the class file
+     * @param defineNanos   The time spent defining and creating the class
+     * @param bytecodeSize  The size of the generated class file in bytes or <code>0</code> if no class was generated
+     * @param localSlots    The number of local variable slots used by the generated code
+     * @param constant      Whether the expression was folded into a constant
+     * @param error         The error that stopped compilation or <code>null</code> if it succeeded
+     */
+    record Report(String source,
+                  long lexNanos,
+                  long parseNanos,
+                  long generateNanos,
+                  long writeNanos,
+                  long defineNanos,
+                  int bytecodeSize,
+                  int localSlots,
+                  boolean constant,
+                  @Nullable MolangSyntaxException error) {
+
+        /**
+         * @return The time spent in all stages
+         */
+        public long totalNanos() {
+            return this.lexNanos + this.parseNanos + this.generateNanos + this.writeNanos + this.defineNanos;
+        }
+
+        /**
+         * @return Whether compilation failed
+         */
+        public boolean failed() {
+            return this.error != null;
+        }
+    }
+}
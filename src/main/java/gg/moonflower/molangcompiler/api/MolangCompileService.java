@@ -0,0 +1,131 @@
+package gg.moonflower.molangcompiler.api;
+
+import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.core.node.MolangPendingNode;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Compiles expressions in the background, so loading many expressions does not stall the calling thread.</p>
+ * <p>Jobs with a higher priority are compiled first, and jobs with the same priority are compiled in the order they were submitted.
+ * Jobs run in the executor passed to the constructor or only when {@link #tick(long)} is called, for example once per frame on the game thread.</p>
+ *
+ * @author Ocelot
+ * @since 3.2.0
+ */
+public class MolangCompileService {
+
+    private static final Comparator<Job> ORDER = Comparator.comparingInt(Job::priority).reversed().thenComparingLong(Job::order);
+
+    private final MolangCompiler compiler;
+    private final Executor executor;
+    private final PriorityBlockingQueue<Job> queue;
+    private final AtomicLong order;
+
+    /**
+     * Creates a service that only compiles when {@link #tick(long)} is called.
+     *
+     * @param compiler The compiler to use
+     */
+    public MolangCompileService(MolangCompiler compiler) {
+        this(compiler, null);
+    }
+
+    /**
+     * Creates a service that compiles jobs in the specified executor.
+     *
+     * @param compiler The compiler to use
+     * @param executor The executor to compile in or <code>null</code> to only compile when {@link #tick(long)} is called
+     */
+    public MolangCompileService(MolangCompiler compiler, @Nullable Executor executor) {
+        this.compiler = compiler;
+        this.executor = executor;
+        this.queue = new PriorityBlockingQueue<>(16, ORDER);
+        this.order = new AtomicLong();
+    }
+
+    /**
+     * Queues the specified input to be compiled. Cancelling the future before the job starts removes it from the queue.
+     *
+     * @param input    The data to compile
+     * @param priority The priority of the job. Higher values are compiled first
+     * @return A future for the compiled expression, completed exceptionally with a {@link MolangSyntaxException} if the input is not valid
+     */
+    public CompletableFuture<MolangExpression> submit(String input, int priority) {
+        Job job = new Job(input, priority, this.order.getAndIncrement(), new CompletableFuture<>());
+        this.queue.add(job);
+        job.future.whenComplete((expression, error) -> {
+            if (job.future.isCancelled()) {
+                this.queue.remove(job);
+            }
+        });
+        if (this.executor != null) {
+            // Each task runs the most important job at the time it starts, not the one that queued it
+            this.executor.execute(this::runNext);
+        }
+        return job.future;
+    }
+
+    /**
+     * Queues the specified input to be compiled and returns an expression that can be used immediately.
+     * Until compilation finishes, the expression evaluates to the fallback value. If compilation fails, it keeps evaluating to the fallback value.
+     *
+     * @param input    The data to compile
+     * @param priority The priority of the job. Higher values are compiled first
+     * @param fallback The value to use until the expression is compiled
+     * @return An expression that uses the compiled expression once it is ready
+     */
+    public MolangExpression submitPlaceholder(String input, int priority, float fallback) {
+        MolangPendingNode placeholder = new MolangPendingNode(input, fallback);
+        this.submit(input, priority).thenAccept(placeholder::complete);
+        return placeholder;
+    }
+
+    /**
+     * Compiles queued jobs until the time budget runs out or there are no jobs left.
+     * A job is only started while there is time left, but a single job can take longer than the budget.
+     *
+     * @param budgetNanos The time to spend compiling in nanoseconds
+     * @return The number of jobs compiled
+     */
+    public int tick(long budgetNanos) {
+        long start = System.nanoTime();
+        int compiled = 0;
+        while (System.nanoTime() - start < budgetNanos && this.runNext()) {
+            compiled++;
+        }
+        return compiled;
+    }
+
+    private boolean runNext() {
+        Job job;
+        do {
+            job = this.queue.poll();
+            if (job == null) {
+                return false;
+            }
+        } while (job.future.isDone());
+
+        try {
+            job.future.complete(this.compiler.compile(job.input));
+        } catch (Throwable t) {
+            job.future.completeExceptionally(t);
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of jobs that have not started yet
+     */
+    public int getPending() {
+        return this.queue.size();
+    }
+
+    private record Job(String input, int priority, long order, CompletableFuture<MolangExpression> future) {
+    }
+}
@@ -2,10 +2,16 @@ package gg.moonflower.molangcompiler.api;
 
 import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
 import gg.moonflower.molangcompiler.core.MolangCompilerImpl;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
 
 /**
  * <p>Compiles a {@link MolangExpression} from a string input.</p>
- * <p>A compiler instance must be created to allow garbage collection of generated classes when no longer in use.</p>
+ * <p>A compiler instance must be created to allow garbage collection of generated classes when no longer in use.
+ * Generated classes are also split into loaders of at most {@linkplain #setClassBudget(int) a set number of classes}.
+ * Full loaders are retired and unloaded once every expression in them is collected, so a long-lived compiler does not keep every class it ever generated.</p>
+ * <p>Compilers can be shared between any number of threads. No state is kept per thread, so compiling from short-lived or virtual threads does not retain memory.</p>
  *
  * @author Ocelot
  * @see GlobalMolangCompiler
@@ -21,6 +27,19 @@ public interface MolangCompiler {
      * Whether to write the java bytecode to a class file. This is only for debugging.
      */
     int WRITE_CLASSES_FLAG = 0b10;
+    /**
+     * Whether to count calls into every compiled expression and time a sample of them. The results are available from {@link #getMetrics()}.
+     *
+     * @since 3.2.0
+     */
+    int INSTRUMENT_FLAG = 0b100;
+    /**
+     * Whether unknown objects, variables, and functions evaluate to <code>0</code> instead of throwing, as described by the MoLang specification.
+     * Values written to objects that cannot be modified are ignored. Every unknown value is counted and logged by {@link MolangFailures}.
+     *
+     * @since 3.2.0
+     */
+    int LENIENT_FLAG = 0b1000;
 
     /**
      * All default compilation flags. This may change in future versions as more options are added.
@@ -29,6 +48,8 @@ public interface MolangCompiler {
 
     /**
      * Compiles a {@link MolangExpression} from the specified string input.
+     * Inputs that only differ in whitespace, the case of object names, or object aliases such as <code>q</code> and <code>query</code>
+     * return the same instance for as long as it is in use, so no duplicate classes are generated and equal expressions compare by identity.
      *
      * @param input The data to compile
      * @return The compiled expression
@@ -36,6 +57,151 @@ public interface MolangCompiler {
      */
     MolangExpression compile(String input) throws MolangSyntaxException;
 
+    /**
+     * Compiles a {@link MolangExpression} that caches its result until any value it reads changes.
+     * The expression is only cached if it does not write variables, call functions, read arrays, or use random numbers. Otherwise, it is compiled normally.
+     * Each copy of the expression caches one result, so {@link MolangExpression#getCopy()} should be used to give every entity its own cache.
+     *
+     * @param input The data to compile
+     * @return The compiled expression
+     * @throws MolangSyntaxException If any error occurs
+     * @since 3.2.0
+     */
+    MolangExpression compileMemoized(String input) throws MolangSyntaxException;
+
+    /**
+     * <p>Parses the specified string input, but only generates bytecode the first time the expression is evaluated.</p>
+     * <p>This should be used for expressions that may never be evaluated, so they do not take time or class space when loading.
+     * Syntax errors are still thrown by this method, while errors from generating bytecode are thrown as a {@link gg.moonflower.molangcompiler.api.exception.MolangRuntimeException} from the first evaluation.</p>
+     * <p>Every evaluation forwards to the compiled expression through one extra virtual call. Expressions that are known to be evaluated often should use {@link #compile(String)} instead.</p>
+     *
+     * @param input The data to compile
+     * @return An expression that compiles itself when first used
+     * @throws MolangSyntaxException If the input is not valid
+     * @since 3.2.0
+     */
+    MolangExpression compileLazy(String input) throws MolangSyntaxException;
+
+    /**
+     * <p>Parses the specified string inputs and writes them into a compact binary format.</p>
+     * <p>The result can be shipped instead of source strings and loaded with {@link #compileEncoded(ByteBuffer)}, which skips lexing and parsing.
+     * The format is versioned, so data written by a different version of the compiler may be rejected and must be encoded again.</p>
+     *
+     * @param inputs The data to encode
+     * @return The encoded expressions
+     * @throws MolangSyntaxException If any input is not valid
+     * @since 3.2.0
+     */
+    byte[] encode(String... inputs) throws MolangSyntaxException;
+
+    /**
+     * Compiles every expression written by {@link #encode(String...)}. The buffer can be memory-mapped, since expressions are read directly from it.
+     * The position of the buffer is not changed.
+     *
+     * @param buffer The encoded expressions
+     * @return The compiled expressions in the order they were encoded
+     * @throws MolangSyntaxException If the data is not valid or was written by an unsupported version
+     * @since 3.2.0
+     */
+    MolangExpression[] compileEncoded(ByteBuffer buffer) throws MolangSyntaxException;
+
+    /**
+     * Analyzes the specified string input without compiling it.
+     *
+     * @param input The data to analyze
+     * @return Information about the expression
+     * @throws MolangSyntaxException If any error occurs
+     * @since 3.2.0
+     */
+    MolangAnalysis analyze(String input) throws MolangSyntaxException;
+
+    /**
+     * Compiles a {@link MolangBatchExpression} from the specified string input.
+     * The specified input variables are read from column arrays instead of the environment, so one call can evaluate many rows.
+     *
+     * @param input  The data to compile
+     * @param inputs The variables to read from input columns, for example <code>query.anim_time</code>
+     * @return The compiled batch expression
+     * @throws MolangSyntaxException If any error occurs
+     * @since 3.2.0
+     */
+    MolangBatchExpression compileBatch(String input, String... inputs) throws MolangSyntaxException;
+
+    /**
+     * Compiles several string inputs into a single {@link MolangExpressionGroup}.
+     * Object lookups, variable reads, and temp variables are shared between the expressions.
+     *
+     * @param inputs The expressions to compile, in the order their results are written
+     * @return The compiled expression group
+     * @throws MolangSyntaxException If any error occurs
+     * @since 3.2.0
+     */
+    MolangExpressionGroup compileGroup(String... inputs) throws MolangSyntaxException;
+
+    /**
+     * @return The call counts and times of every expression compiled with {@link #INSTRUMENT_FLAG} or <code>null</code> if the flag is not set
+     * @since 3.2.0
+     */
+    @Nullable MolangMetrics getMetrics();
+
+    /**
+     * Adds a listener that receives timings and sizes for every expression compiled after this call.
+     *
+     * @param listener The listener to add
+     * @since 3.2.0
+     */
+    void addListener(MolangCompilationListener listener);
+
+    /**
+     * Removes a listener added with {@link #addListener(MolangCompilationListener)}.
+     *
+     * @param listener The listener to remove
+     * @since 3.2.0
+     */
+    void removeListener(MolangCompilationListener listener);
+
+    /**
+     * Sets the number of classes generated into a single class loader before a new loader is started.
+     * Lower values let classes unload sooner when expressions are replaced often, at the cost of more loaders.
+     *
+     * @param classBudget The maximum number of classes per loader
+     * @throws IllegalArgumentException If the budget is less than 1
+     * @since 3.2.0
+     */
+    void setClassBudget(int classBudget);
+
+    /**
+     * <p>Sets the number of times loops may repeat in a single evaluation of an expression, counted across every loop in it.</p>
+     * <p>If an evaluation runs out, it stops and returns <code>0</code> without writing back any modified variables.
+     * This keeps expressions like <code>loop(1e9, {...})</code> from stalling the caller.
+     * The budget is compiled into each expression, so it only applies to expressions compiled after this call, and no check is generated while it is disabled.</p>
+     *
+     * @param loopBudget The maximum number of repeats or <code>0</code> to disable the check
+     * @throws IllegalArgumentException If the budget is negative
+     * @since 3.2.0
+     */
+    void setLoopBudget(int loopBudget);
+
+    /**
+     * <p>Compiles the expression again if it keeps a retired class loader from unloading.</p>
+     * <p>A retired loader is only unloaded once every expression in it is collected.
+     * Replacing the few long-lived expressions of a mostly unused loader with the result of this method allows the rest of its classes to unload.
+     * Callers hold compiled expressions directly, so survivors are never replaced automatically.</p>
+     * <p>Lazy and memoized expressions are checked by the expression they forward to and are compiled again the same way.</p>
+     *
+     * @param expression The expression to check
+     * @return A new copy of the expression in the current loader or the same expression if it is not in a retired loader
+     * @throws MolangSyntaxException If any error occurs
+     * @since 3.2.0
+     */
+    MolangExpression refresh(MolangExpression expression) throws MolangSyntaxException;
+
+    /**
+     * @return The number of classes and bytes generated by this compiler and how many of them are still loaded
+     * @since 3.2.0
+     */
+    ClassStatistics getClassStatistics();
+
     /**
      * Creates a compiler with the {@linkplain MolangCompiler#DEFAULT_FLAGS default flags}.
      *
@@ -72,4 +238,25 @@ public interface MolangCompiler {
     static MolangCompiler create(int flags, ClassLoader parent) {
         return new MolangCompilerImpl(flags, parent);
     }
+
+    /**
+     * The classes generated by a compiler. Sizes are measured from the generated class files.
+     *
+     * @param definedClasses The number of classes ever generated
+     * @param definedBytes   The size of every class ever generated
+     * @param loaders        The number of class loaders that have not been unloaded
+     * @param loadedClasses  The number of classes in loaders that have not been unloaded
+     * @param loadedBytes    The size of every class in loaders that have not been unloaded
+     * @param liveClasses    The number of expressions that have not been collected
+     * @param liveBytes      The size of every class with an expression that has not been collected
+     * @since 3.2.0
+     */
+    record ClassStatistics(long definedClasses,
+                           long definedBytes,
+                           int loaders,
+                           long loadedClasses,
+                           long loadedBytes,
+                           int liveClasses,
+                           long liveBytes) {
+    }
 }
@@ -1,8 +1,10 @@
 package gg.moonflower.molangcompiler.api;
 
+import gg.moonflower.molangcompiler.api.bridge.FloatSupplier;
 import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
 import gg.moonflower.molangcompiler.api.object.MolangObject;
 import gg.moonflower.molangcompiler.core.ImmutableMolangEnvironment;
+import gg.moonflower.molangcompiler.core.MolangFailureCounter;
 
 import java.util.Collection;
 import java.util.Locale;
@@ -124,6 +126,18 @@ public interface MolangEnvironment {
      */
     void setThisValue(float thisValue);
 
+    /**
+     * <p>Retrieves the current epoch of this environment, usually the current frame or tick.</p>
+     * <p>Values created with {@link MolangExpression#perEpoch(FloatSupplier)} are computed at most once per epoch.
+     * A negative epoch means this environment does not track epochs, so those values are computed every time they are read.</p>
+     *
+     * @return The current epoch or <code>-1</code> if epochs are not tracked
+     * @since 3.2.0
+     */
+    default long getEpoch() {
+        return -1L;
+    }
+
     /**
      * @return Whether this environment can be edited
      */
@@ -164,7 +178,7 @@ public interface MolangEnvironment {
 
     /**
      * <p>Resolves the float value of the specified expression in this environment. Catches any exception thrown and returns <code>0.0</code>.</p>
-     * <p>This allows environments to fine-tune how expressions are evaluated.</p>
+     * <p>This allows environments to fine-tune how expressions are evaluated. Errors are logged at the rate set by {@link MolangFailures#setLogInterval(long)}.</p>
      *
      * @param expression The expression to evaluate
      * @return The resulting value
@@ -174,7 +188,7 @@ public interface MolangEnvironment {
         try {
             return this.resolve(expression);
         } catch (Throwable t) {
-            t.printStackTrace();
+            MolangFailureCounter.log(t);
             return 0.0F;
         }
     }
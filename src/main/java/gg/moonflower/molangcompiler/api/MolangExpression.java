@@ -1,11 +1,16 @@
 package gg.moonflower.molangcompiler.api;
 
+import gg.moonflower.molangcompiler.api.bridge.FloatSupplier;
 import gg.moonflower.molangcompiler.api.bridge.MolangJavaFunction;
 import gg.moonflower.molangcompiler.api.bridge.MolangVariable;
 import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
 import gg.moonflower.molangcompiler.core.node.*;
 import org.jetbrains.annotations.ApiStatus;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
 import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
 
@@ -151,6 +156,63 @@ public interface MolangExpression {
         return new MolangFunctionNode(-1, consumer);
     }
 
+    /**
+     * Creates a {@link MolangExpression} of the specified value that will be computed at most once per {@linkplain MolangEnvironment#getEpoch() epoch}.
+     * If the environment does not track epochs, the value is computed after every call.
+     *
+     * @param value The value to represent as an expression
+     * @return A new expression with that value
+     * @since 3.2.0
+     */
+    static MolangExpression perEpoch(FloatSupplier value) {
+        return new MolangEpochNode(value);
+    }
+
+    /**
+     * Creates a {@link MolangExpression} that calls the specified java code at most once per set of arguments each {@linkplain MolangEnvironment#getEpoch() epoch}.
+     * The function must always return the same result for the same arguments within one epoch.
+     *
+     * @param params   The number of parameters in the function or <code>-1</code> to take any number of parameters
+     * @param consumer The implementation of the MoLang call
+     * @return A new expression that calls the java function
+     * @since 3.2.0
+     */
+    static MolangExpression perEpochFunction(int params, MolangJavaFunction consumer) {
+        return new MolangEpochFunctionNode(params, consumer);
+    }
+
+    /**
+     * Creates a {@link MolangExpression} that calls the specified method handle. Compiled expressions invoke the handle directly with float arguments instead of going through the environment parameters.
+     *
+     * @param handle The handle to call. It must return <code>float</code> and only take <code>float</code> parameters
+     * @return A new expression that calls the handle
+     * @throws IllegalArgumentException If the handle does not have a valid type
+     * @since 3.2.0
+     */
+    static MolangExpression function(MethodHandle handle) {
+        return new MolangStaticFunctionNode(handle);
+    }
+
+    /**
+     * Creates a {@link MolangExpression} that calls a public static method. Compiled expressions invoke the method directly with float arguments instead of going through the environment parameters.
+     *
+     * @param owner  The class declaring the method
+     * @param name   The name of the method
+     * @param params The number of <code>float</code> parameters the method takes
+     * @return A new expression that calls the method
+     * @throws IllegalArgumentException If there is no public static method with that signature
+     * @since 3.2.0
+     */
+    static MolangExpression function(Class<?> owner, String name, int params) {
+        Class<?>[] parameters = new Class<?>[params];
+        Arrays.fill(parameters, float.class);
+        try {
+            return new MolangStaticFunctionNode(MethodHandles.publicLookup().findStatic(owner, name, MethodType.methodType(float.class, parameters)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Failed to find static function " + owner.getName() + "." + name, e);
+        }
+    }
+
     /**
      * Creates a {@link MolangExpression} of the specified value that will be computed after every call.
      *
@@ -182,6 +244,20 @@ public interface MolangExpression {
         return new MolangVariableNode(value);
     }
 
+    /**
+     * <p>Creates an array that expressions can read by index, for example <code>array.textures[q.variant]</code>.
+     * Indices are rounded towards zero and clamped to the first or last value, and the array evaluates to its first value when read without an index.</p>
+     * <p>The values are not copied, so changing them is seen by every expression without recompiling.</p>
+     *
+     * @param values The values in the array
+     * @return A new array expression
+     * @throws IllegalArgumentException If there are no values
+     * @since 3.2.0
+     */
+    static MolangExpression array(float... values) {
+        return new MolangArrayNode(values);
+    }
+
     /**
      * Creates a {@link MolangExpression} that runs all expressions in order.
      *
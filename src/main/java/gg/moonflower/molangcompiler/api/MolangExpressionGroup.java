@@ -0,0 +1,29 @@
+package gg.moonflower.molangcompiler.api;
+
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+
+/**
+ * <p>Several expressions compiled into a single method, such as the x, y, and z channels of an animation.</p>
+ * <p>Object lookups, variable reads, and temp variables are shared between every expression in the group,
+ * so evaluating the group is cheaper than evaluating each expression separately.</p>
+ *
+ * @author Ocelot
+ * @see MolangCompiler#compileGroup(String...)
+ * @since 3.2.0
+ */
+public interface MolangExpressionGroup {
+
+    /**
+     * @return The number of expressions in this group
+     */
+    int size();
+
+    /**
+     * Evaluates every expression in order and writes each result into the matching index of the output.
+     *
+     * @param environment The environment to execute in
+     * @param output      The array to write results into. It must have at least {@link #size()} elements
+     * @throws MolangRuntimeException If any error occurs when resolving the values or the output is too small
+     */
+    void evaluate(MolangEnvironment environment, float[] output) throws MolangRuntimeException;
+}
@@ -0,0 +1,45 @@
+package gg.moonflower.molangcompiler.api;
+
+import gg.moonflower.molangcompiler.core.MolangFailureCounter;
+import gg.moonflower.molangcompiler.core.MolangUtil;
+
+/**
+ * <p>Reports unknown objects, variables, and functions read by expressions compiled with {@link MolangCompiler#LENIENT_FLAG}.</p>
+ * <p>Every unknown value is counted for the expression that read it and logged as a warning.
+ * Warnings are rate limited across all expressions, and errors caught by {@link MolangEnvironment#safeResolve(MolangExpression)} use the same limit.</p>
+ *
+ * @author Ocelot
+ * @since 3.2.0
+ */
+public final class MolangFailures {
+
+    private MolangFailures() {
+    }
+
+    /**
+     * Retrieves the number of unknown values read by an expression. All expressions compiled from the same source by the same compiler share one count.
+     * Lazy, memoized, and placeholder expressions report the count of the expression they forward to.
+     *
+     * @param expression The expression returned by {@link MolangCompiler#compile(String)}
+     * @return The number of unknown values read
+     */
+    public static long getCount(MolangExpression expression) {
+        return MolangFailureCounter.get(MolangUtil.unwrap(expression).getClass()).getFailures();
+    }
+
+    /**
+     * @return The minimum time between logged warnings in nanoseconds
+     */
+    public static long getLogInterval() {
+        return MolangFailureCounter.getLogInterval();
+    }
+
+    /**
+     * Sets the minimum time between logged warnings. Warnings in between are not logged, but the next warning includes how many were skipped.
+     *
+     * @param nanos The minimum time in nanoseconds
+     */
+    public static void setLogInterval(long nanos) {
+        MolangFailureCounter.setLogInterval(nanos);
+    }
+}
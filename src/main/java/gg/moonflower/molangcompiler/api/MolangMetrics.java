@@ -0,0 +1,171 @@
+package gg.moonflower.molangcompiler.api;
+
+import gg.moonflower.molangcompiler.core.MolangExpressionCounter;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Records how often every expression compiled with {@link MolangCompiler#INSTRUMENT_FLAG} runs and how long it takes.</p>
+ * <p>Every call is counted, but only one in every {@link #getSampleInterval()} calls is timed.
+ * The total time of an expression is estimated from the timed calls.</p>
+ * <p>While JDK Flight Recorder is recording the <code>gg.moonflower.molangcompiler.SlowEvaluation</code> event, every call is timed
+ * and calls longer than the {@linkplain #setSlowThreshold(long) slow threshold} are recorded.
+ * Exceptions thrown from instrumented expressions are recorded as <code>gg.moonflower.molangcompiler.Error</code> events.</p>
+ * <p>Expressions are only tracked while they are in use. Once an expression is garbage collected, it is removed from the metrics.</p>
+ *
+ * @author Ocelot
+ * @see MolangCompiler#getMetrics()
+ * @since 3.2.0
+ */
+public class MolangMetrics {
+
+    private static final Comparator<Entry> BY_CALLS = Comparator.comparingLong(Entry::calls).reversed();
+    private static final Comparator<Entry> BY_TIME = Comparator.comparingLong(Entry::estimatedNanos).reversed();
+
+    private final int sampleInterval;
+    private final Queue<WeakReference<MolangExpressionCounter>> counters;
+    private final ReferenceQueue<MolangExpressionCounter> collected;
+    private volatile long slowThreshold;
+
+    /**
+     * Creates a new registry.
+     *
+     * @param sampleInterval The number of calls between every timed call. Must be a power of two or <code>0</code> to disable timing
+     */
+    public MolangMetrics(int sampleInterval) {
+        if (sampleInterval < 0 || Integer.bitCount(sampleInterval) > 1) {
+            throw new IllegalArgumentException("Sample interval must be 0 or a power of two");
+        }
+        this.sampleInterval = sampleInterval;
+        this.counters = new ConcurrentLinkedQueue<>();
+        this.collected = new ReferenceQueue<>();
+        this.slowThreshold = TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Creates a counter for a newly compiled expression.
+     *
+     * @param source The source of the expression
+     * @return A new counter
+     */
+    @ApiStatus.Internal
+    public MolangExpressionCounter createCounter(String source) {
+        this.expungeCollected();
+        MolangExpressionCounter counter = new MolangExpressionCounter(this, source);
+        this.counters.add(new WeakReference<>(counter, this.collected));
+        return counter;
+    }
+
+    private void expungeCollected() {
+        // Counters are only referenced by their expressions, so they are collected along with them
+        if (this.collected.poll() != null) {
+            while (this.collected.poll() != null) {
+                // Drain every collected counter, they are all removed below
+            }
+            this.counters.removeIf(reference -> reference.get() == null);
+        }
+    }
+
+    /**
+     * @return A snapshot of every compiled expression in the order they were compiled
+     */
+    public List<Entry> getEntries() {
+        this.expungeCollected();
+        List<Entry> entries = new ArrayList<>();
+        for (Reference<MolangExpressionCounter> reference : this.counters) {
+            MolangExpressionCounter counter = reference.get();
+            if (counter != null) {
+                entries.add(counter.snapshot());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Retrieves the expressions that were called the most.
+     *
+     * @param limit The maximum number of entries to return
+     * @return The entries with the most calls, from most to least
+     */
+    public List<Entry> getTopByCalls(int limit) {
+        return this.getTop(BY_CALLS, limit);
+    }
+
+    /**
+     * Retrieves the expressions that took the most time in total.
+     *
+     * @param limit The maximum number of entries to return
+     * @return The entries with the highest estimated time, from most to least
+     */
+    public List<Entry> getTopByTime(int limit) {
+        return this.getTop(BY_TIME, limit);
+    }
+
+    private List<Entry> getTop(Comparator<Entry> comparator, int limit) {
+        List<Entry> entries = this.getEntries();
+        entries.sort(comparator);
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    /**
+     * Clears the calls and times of every expression.
+     */
+    public void reset() {
+        for (Reference<MolangExpressionCounter> reference : this.counters) {
+            MolangExpressionCounter counter = reference.get();
+            if (counter != null) {
+                counter.reset();
+            }
+        }
+    }
+
+    /**
+     * @return The number of calls between every timed call or <code>0</code> if calls are not timed
+     */
+    public int getSampleInterval() {
+        return this.sampleInterval;
+    }
+
+    /**
+     * @return The time in nanoseconds an evaluation must take to be recorded as a slow evaluation
+     */
+    public long getSlowThreshold() {
+        return this.slowThreshold;
+    }
+
+    /**
+     * Sets how long an evaluation must take to be recorded as a slow evaluation in JDK Flight Recorder. The default is one millisecond.
+     *
+     * @param slowThreshold The threshold in nanoseconds
+     */
+    public void setSlowThreshold(long slowThreshold) {
+        this.slowThreshold = slowThreshold;
+    }
+
+    /**
+     * Recorded values for a single expression.
+     *
+     * @param source       The source of the expression
+     * @param calls        The number of times the expression was called
+     * @param samples      The number of calls that were timed
+     * @param sampledNanos The total time of all timed calls in nanoseconds
+     */
+    public record Entry(String source, long calls, long samples, long sampledNanos) {
+
+        /**
+         * @return The estimated total time of all calls in nanoseconds
+         */
+        public long estimatedNanos() {
+            return this.samples > 0 ? (long) ((double) this.sampledNanos / this.samples * this.calls) : 0L;
+        }
+    }
+}
@@ -4,7 +4,11 @@ import gg.moonflower.molangcompiler.api.exception.MolangException;
 import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
 import gg.moonflower.molangcompiler.api.object.ImmutableMolangObject;
 import gg.moonflower.molangcompiler.api.object.MolangObject;
+import gg.moonflower.molangcompiler.core.node.MolangEpochCache;
+import gg.moonflower.molangcompiler.core.node.MolangFunctionContext;
 import gg.moonflower.molangcompiler.core.object.MolangVariableStorage;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
@@ -17,12 +21,19 @@ import java.util.*;
 public class MolangRuntime implements MolangEnvironment {
 
     private float thisValue;
+    private long epoch;
+    private final MolangRuntime parent;
     private final Map<String, MolangObject> objects;
     private final Map<String, String> aliases;
-    private final List<Float> parameters;
+    private float[] parameters;
+    private int parameterCount;
+    private MolangFunctionContext functionContext;
+    private final MolangEpochCache epochCache;
 
     private MolangRuntime(MolangObject query, MolangObject global, MolangObject variable, Map<String, MolangObject> libraries) {
         this.thisValue = 0.0F;
+        this.epoch = -1L;
+        this.parent = null;
         this.objects = new HashMap<>();
         this.aliases = new HashMap<>();
         this.objects.putAll(libraries);
@@ -30,17 +41,78 @@ public class MolangRuntime implements MolangEnvironment {
         this.loadLibrary("query", query, "q"); // This is static accesses
         this.loadLibrary("global", global); // This is parameter access
         this.loadLibrary("variable", variable, "v"); // This can be accessed by Java code
-        this.parameters = new ArrayList<>(8);
+        this.parameters = new float[8];
+        this.epochCache = new MolangEpochCache();
+    }
+
+    private MolangRuntime(MolangRuntime parent) {
+        this.thisValue = parent.thisValue;
+        this.epoch = -1L;
+        this.parent = parent;
+        this.objects = new HashMap<>(2);
+        this.aliases = new HashMap<>();
+        this.objects.put("variable", parent.getStorage("variable").layer());
+        this.parameters = new float[8];
+        this.epochCache = null;
     }
 
     private String sanitize(String name) {
         name = name.toLowerCase(Locale.ROOT);
-        while (this.aliases.containsKey(name)) {
-            name = this.aliases.get(name).toLowerCase(Locale.ROOT);
+        String alias;
+        while ((alias = this.getAlias(name)) != null) {
+            name = alias.toLowerCase(Locale.ROOT);
         }
         return name;
     }
 
+    private @Nullable String getAlias(String name) {
+        String alias = this.aliases.get(name);
+        if (alias == null && this.parent != null) {
+            return this.parent.getAlias(name);
+        }
+        return alias;
+    }
+
+    private @Nullable MolangObject getObject(String name) {
+        MolangObject object = this.objects.get(name);
+        if (object == null && this.parent != null) {
+            return this.parent.getObject(name);
+        }
+        return object;
+    }
+
+    /**
+     * <p>Creates a lightweight runtime layered on top of this one.</p>
+     * <p>Libraries, aliases, query, and global values are shared with this runtime by reference, so editing them in the layer edits this runtime.
+     * Variables are read through to this runtime and copied into the layer the first time they are accessed, so changes to variables never leak back into this runtime.</p>
+     *
+     * @return A new runtime that shares everything except variables with this runtime
+     * @since 3.2.0
+     */
+    public MolangRuntime layer() {
+        return new MolangRuntime(this);
+    }
+
+    /**
+     * <p>Clears all variables, parameters, and the value of <code>this</code> while keeping libraries, aliases, query, and global values.</p>
+     * <p>Runtimes created with {@link #layer()} go back to the variables of their parent.
+     * Variables are shared between every runtime created from the same {@link Builder}, so resetting one of those clears the variables of all of them.</p>
+     *
+     * @since 3.2.0
+     */
+    public void reset() {
+        this.thisValue = 0.0F;
+        this.parameterCount = 0;
+        this.getStorage("variable").clear();
+    }
+
+    /**
+     * @return The runtime this runtime is layered on top of or <code>null</code> if this is not a layer
+     */
+    @Nullable MolangRuntime getParent() {
+        return this.parent;
+    }
+
     /**
      * @return A dump of all objects stored in the runtime
      */
@@ -53,8 +125,8 @@ public class MolangRuntime implements MolangEnvironment {
         builder.deleteCharAt(builder.length() - 2);
         builder.append("==End Objects==\n\n");
         builder.append("==Start Parameters==\n");
-        for (int i = 0; i < this.parameters.size(); i++) {
-            builder.append("\tParameter ").append(i).append('=').append(this.parameters.get(i)).append('\n');
+        for (int i = 0; i < this.parameterCount; i++) {
+            builder.append("\tParameter ").append(i).append('=').append(this.parameters[i]).append('\n');
         }
         builder.append("==End Parameters==\n\n");
         builder.append("==End MoLang Runtime Dump==");
@@ -71,7 +143,7 @@ public class MolangRuntime implements MolangEnvironment {
 
     @Override
     public void loadAlias(String name, String first, String... aliases) {
-        if (!this.objects.containsKey(name)) {
+        if (this.getObject(name) == null) {
             throw new IllegalArgumentException("Invalid MoLang library: " + name);
         }
 
@@ -83,12 +155,15 @@ public class MolangRuntime implements MolangEnvironment {
 
     @Override
     public void loadParameter(float expression) {
-        this.parameters.add(expression);
+        if (this.parameterCount == this.parameters.length) {
+            this.parameters = Arrays.copyOf(this.parameters, this.parameters.length * 2);
+        }
+        this.parameters[this.parameterCount++] = expression;
     }
 
     @Override
     public void clearParameters() {
-        this.parameters.clear();
+        this.parameterCount = 0;
     }
 
     @Override
@@ -99,7 +174,7 @@ public class MolangRuntime implements MolangEnvironment {
     @Override
     public MolangObject get(String name) throws MolangRuntimeException {
         name = this.sanitize(name);
-        MolangObject object = this.objects.get(name);
+        MolangObject object = this.getObject(name);
         if (object != null) {
             return object;
         }
@@ -108,20 +183,50 @@ public class MolangRuntime implements MolangEnvironment {
 
     @Override
     public float getParameter(int parameter) throws MolangRuntimeException {
-        if (parameter < 0 || parameter >= this.parameters.size()) {
+        if (parameter < 0 || parameter >= this.parameterCount) {
             throw new MolangRuntimeException("No parameter loaded in slot " + parameter);
         }
-        return this.parameters.get(parameter);
+        return this.parameters[parameter];
     }
 
     @Override
     public int getParameters() {
-        return this.parameters.size();
+        return this.parameterCount;
+    }
+
+    /**
+     * @return The context reused to pass parameters into java functions called from this runtime
+     */
+    @ApiStatus.Internal
+    public MolangFunctionContext getFunctionContext() {
+        if (this.functionContext == null) {
+            this.functionContext = new MolangFunctionContext();
+        }
+        return this.functionContext;
+    }
+
+    /**
+     * @return The results of per-epoch functions, shared with all layers of the root runtime
+     */
+    @ApiStatus.Internal
+    public MolangEpochCache getEpochCache() {
+        return this.parent != null ? this.parent.getEpochCache() : this.epochCache;
+    }
+
+    @Override
+    public boolean has(String name) {
+        return this.getObject(this.sanitize(name)) != null;
     }
 
     @Override
     public Collection<String> getObjects() {
-        return this.objects.keySet();
+        if (this.parent == null) {
+            return this.objects.keySet();
+        }
+
+        Set<String> objects = new HashSet<>(this.parent.getObjects());
+        objects.addAll(this.objects.keySet());
+        return objects;
     }
 
     @Override
@@ -129,6 +234,39 @@ public class MolangRuntime implements MolangEnvironment {
         this.thisValue = thisValue;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>Layers created with {@link #layer()} share the epoch of their parent.</p>
+     */
+    @Override
+    public long getEpoch() {
+        return this.parent != null ? this.parent.getEpoch() : this.epoch;
+    }
+
+    /**
+     * Sets the current epoch, usually the current frame or tick. Runtimes do not track epochs until this or {@link #nextEpoch()} is called.
+     * Setting the epoch of a layer sets the epoch of its parent.
+     *
+     * @param epoch The new epoch. Negative values stop tracking epochs
+     * @since 3.2.0
+     */
+    public void setEpoch(long epoch) {
+        if (this.parent != null) {
+            this.parent.setEpoch(epoch);
+        } else {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Advances to the next epoch, so all per-epoch values are computed again the next time they are read.
+     *
+     * @since 3.2.0
+     */
+    public void nextEpoch() {
+        this.setEpoch(Math.max(this.getEpoch(), -1L) + 1L);
+    }
+
     @Override
     public boolean canEdit() {
         return true;
@@ -143,7 +281,7 @@ public class MolangRuntime implements MolangEnvironment {
     }
 
     private MolangVariableStorage getStorage(String name) {
-        MolangObject object = this.objects.get(name);
+        MolangObject object = this.getObject(name);
         if (object == null) {
             throw new IllegalStateException("Missing " + name);
         }
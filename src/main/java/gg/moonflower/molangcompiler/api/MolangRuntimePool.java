@@ -0,0 +1,130 @@
+package gg.moonflower.molangcompiler.api;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * <p>A pool of short-lived runtimes layered on top of a template runtime.</p>
+ * <p>Runtimes are {@linkplain MolangRuntime#layer() layers} of the template, so they share libraries, query, and global values with it.
+ * Released runtimes are {@linkplain MolangRuntime#reset() reset} and handed out again instead of building a new runtime every time.</p>
+ *
+ * @author Ocelot
+ * @since 3.2.0
+ */
+public class MolangRuntimePool {
+
+    private final MolangRuntime template;
+    private final int maxSize;
+    private final Deque<MolangRuntime> pool;
+    private final Set<MolangRuntime> idle;
+    private long acquired;
+    private long created;
+    private long released;
+    private long discarded;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param template The runtime all pooled runtimes are layered on
+     * @param maxSize  The maximum number of idle runtimes to keep
+     */
+    public MolangRuntimePool(MolangRuntime template, int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Pool size must be at least 0");
+        }
+        this.template = template;
+        this.maxSize = maxSize;
+        this.pool = new ArrayDeque<>(Math.min(maxSize, 64));
+        this.idle = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Retrieves an idle runtime or creates a new one if the pool is empty.
+     *
+     * @return A runtime with the variables of the template
+     */
+    public synchronized MolangRuntime acquire() {
+        this.acquired++;
+        MolangRuntime runtime = this.pool.pollLast();
+        if (runtime != null) {
+            this.idle.remove(runtime);
+            return runtime;
+        }
+
+        this.created++;
+        return this.template.layer();
+    }
+
+    /**
+     * Resets the specified runtime and returns it to the pool. The runtime must not be used after it is released.
+     *
+     * @param runtime The runtime to release
+     * @throws IllegalArgumentException If the runtime was not acquired from this pool
+     * @throws IllegalStateException    If the runtime is already in the pool
+     */
+    public synchronized void release(MolangRuntime runtime) {
+        if (runtime.getParent() != this.template) {
+            throw new IllegalArgumentException("Runtime was not acquired from this pool");
+        }
+        // Releasing twice would hand the same runtime to two callers
+        if (this.idle.contains(runtime)) {
+            throw new IllegalStateException("Runtime was already released");
+        }
+
+        this.released++;
+        if (this.pool.size() >= this.maxSize) {
+            this.discarded++;
+            return;
+        }
+
+        runtime.reset();
+        this.pool.addLast(runtime);
+        this.idle.add(runtime);
+    }
+
+    /**
+     * Removes all idle runtimes from the pool.
+     */
+    public synchronized void clear() {
+        this.pool.clear();
+        this.idle.clear();
+    }
+
+    /**
+     * @return The runtime all pooled runtimes are layered on
+     */
+    public MolangRuntime getTemplate() {
+        return this.template;
+    }
+
+    /**
+     * @return A snapshot of the usage of this pool
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(this.acquired, this.created, this.released, this.discarded, this.pool.size());
+    }
+
+    /**
+     * Usage statistics of a {@link MolangRuntimePool}.
+     *
+     * @param acquired  The number of runtimes handed out
+     * @param created   The number of runtimes that had to be created because the pool was empty
+     * @param released  The number of runtimes returned to the pool
+     * @param discarded The number of released runtimes dropped because the pool was full
+     * @param idle      The number of runtimes currently waiting in the pool
+     * @author Ocelot
+     * @since 3.2.0
+     */
+    public record Statistics(long acquired, long created, long released, long discarded, int idle) {
+
+        /**
+         * @return The fraction of acquired runtimes that were reused from the pool
+         */
+        public double hitRate() {
+            return this.acquired == 0 ? 0.0 : (double) (this.acquired - this.created) / this.acquired;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package gg.moonflower.molangcompiler.api;
+
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import gg.moonflower.molangcompiler.core.MolangUtil;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Evaluates many expressions in their own environments across a {@link ForkJoinPool}.</p>
+ * <p>Jobs are grouped by the variables of their environment. Jobs in the same group always run in the order they were passed on a single thread,
+ * while separate groups run in parallel. Runtimes created from the same {@link MolangRuntime.Builder} share variables, so they are grouped together,
+ * and {@linkplain MolangRuntime#layer() layers} only depend on their own variables.
+ * Any other object written by an expression, such as <code>global</code>, must not be shared between environments in different groups.</p>
+ *
+ * @author Ocelot
+ * @since 3.2.0
+ */
+public class MolangScheduler {
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param pool      The pool to run jobs in
+     * @param threshold The number of jobs to run in a single task before splitting work across threads
+     */
+    public MolangScheduler(ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be at least 1");
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Creates a new scheduler that runs in the {@linkplain ForkJoinPool#commonPool() common pool}.
+     *
+     * @return A new scheduler
+     */
+    public static MolangScheduler create() {
+        return new MolangScheduler(ForkJoinPool.commonPool(), 64);
+    }
+
+    /**
+     * Evaluates <code>expressions[i]</code> in <code>environments[i]</code> and writes the result into <code>output[i]</code> for every job.
+     * If any job fails, no more groups are started and the first error is thrown once all running tasks finish.
+     *
+     * @param expressions  The expressions to evaluate
+     * @param environments The environment to evaluate each expression in
+     * @param output       The array to write each result into
+     * @throws MolangRuntimeException If any error occurs when resolving the values
+     * @throws IllegalArgumentException If the arrays do not have the same length
+     */
+    public void evaluate(MolangExpression[] expressions, MolangEnvironment[] environments, float[] output) throws MolangRuntimeException {
+        int count = expressions.length;
+        if (environments.length != count || output.length < count) {
+            throw new IllegalArgumentException("Expected " + count + " environments and outputs, got " + environments.length + " and " + output.length);
+        }
+        if (count <= this.threshold) {
+            for (int i = 0; i < count; i++) {
+                output[i] = environments[i].resolve(expressions[i]);
+            }
+            return;
+        }
+
+        // Sort jobs by group while keeping their order inside each group
+        Map<Object, Integer> groupIds = new IdentityHashMap<>();
+        int[] groups = new int[count];
+        int[] starts = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            int group = groupIds.computeIfAbsent(getKey(environments[i]), key -> groupIds.size());
+            groups[i] = group;
+            starts[group + 1]++;
+        }
+
+        int groupCount = groupIds.size();
+        for (int i = 0; i < groupCount; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] jobs = new int[count];
+        int[] next = new int[groupCount];
+        for (int i = 0; i < count; i++) {
+            int group = groups[i];
+            jobs[starts[group] + next[group]++] = i;
+        }
+
+        EvaluateTask task = new EvaluateTask(this.threshold, expressions, environments, output, jobs, starts, 0, groupCount);
+        this.pool.invoke(task);
+        MolangRuntimeException error = task.error.get();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static Object getKey(MolangEnvironment environment) {
+        try {
+            return MolangUtil.unwrap(environment.get("variable"));
+        } catch (MolangRuntimeException e) {
+            return environment;
+        }
+    }
+
+    private static class EvaluateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int threshold;
+        private final MolangExpression[] expressions;
+        private final MolangEnvironment[] environments;
+        private final float[] output;
+        private final int[] jobs;
+        private final int[] starts;
+        private final int from;
+        private final int to;
+        private final AtomicReference<MolangRuntimeException> error;
+
+        private EvaluateTask(int threshold, MolangExpression[] expressions, MolangEnvironment[] environments, float[] output, int[] jobs, int[] starts, int from, int to) {
+            this(threshold, expressions, environments, output, jobs, starts, from, to, new AtomicReference<>());
+        }
+
+        private EvaluateTask(int threshold, MolangExpression[] expressions, MolangEnvironment[] environments, float[] output, int[] jobs, int[] starts, int from, int to, AtomicReference<MolangRuntimeException> error) {
+            this.threshold = threshold;
+            this.expressions = expressions;
+            this.environments = environments;
+            this.output = output;
+            this.jobs = jobs;
+            this.starts = starts;
+            this.from = from;
+            this.to = to;
+            this.error = error;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > 1 && this.starts[this.to] - this.starts[this.from] > this.threshold) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new EvaluateTask(this.threshold, this.expressions, this.environments, this.output, this.jobs, this.starts, this.from, middle, this.error),
+                        new EvaluateTask(this.threshold, this.expressions, this.environments, this.output, this.jobs, this.starts, middle, this.to, this.error));
+                return;
+            }
+
+            for (int group = this.from; group < this.to; group++) {
+                if (this.error.get() != null) {
+                    return;
+                }
+                for (int i = this.starts[group]; i < this.starts[group + 1]; i++) {
+                    int job = this.jobs[i];
+                    try {
+                        this.output[job] = this.environments[job].resolve(this.expressions[job]);
+                    } catch (MolangRuntimeException e) {
+                        this.error.compareAndSet(null, e);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
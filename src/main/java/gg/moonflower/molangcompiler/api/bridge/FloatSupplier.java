@@ -0,0 +1,16 @@
+package gg.moonflower.molangcompiler.api.bridge;
+
+/**
+ * Supplies a primitive float without boxing.
+ *
+ * @author Ocelot
+ * @since 3.2.0
+ */
+@FunctionalInterface
+public interface FloatSupplier {
+
+    /**
+     * @return The supplied value
+     */
+    float getAsFloat();
+}
@@ -44,6 +44,11 @@ public class ImmutableMolangObject implements MolangObject {
         return this.parent.getKeys();
     }
 
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+
     @Override
     public String toString() {
         return this.parent.toString();
@@ -1,7 +1,9 @@
 package gg.moonflower.molangcompiler.api.object;
 
 import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.bridge.MolangVariable;
 import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import gg.moonflower.molangcompiler.core.node.MolangVariableNode;
 
 import java.util.Collection;
 
@@ -31,6 +33,37 @@ public interface MolangObject {
      */
     void set(String name, MolangExpression value) throws MolangRuntimeException;
 
+    /**
+     * Retrieves a variable that sets the value with the specified name without looking it up again.
+     * If the value does not exist or is not a {@link MolangVariable}, a new variable is set in its place.
+     *
+     * @param name The name of the variable to get
+     * @return A variable that modifies the value with the specified name
+     * @throws MolangRuntimeException If the value could not be set for any reason
+     * @since 3.2.0
+     */
+    default MolangVariable getVariable(String name) throws MolangRuntimeException {
+        if (this.has(name) && this.get(name) instanceof MolangVariable variable) {
+            return variable;
+        }
+
+        MolangVariableNode variable = new MolangVariableNode(MolangVariable.create());
+        this.set(name, variable);
+        return variable;
+    }
+
+    /**
+     * Sets the value with the specified name to a number. Unlike {@link #set(String, MolangExpression)}, this reuses the existing variable if there is one.
+     *
+     * @param name  The name of the value to set
+     * @param value The new value
+     * @throws MolangRuntimeException If the value could not be set for any reason
+     * @since 3.2.0
+     */
+    default void setFloat(String name, float value) throws MolangRuntimeException {
+        this.getVariable(name).setValue(value);
+    }
+
     /**
      * Removes a value with the specified name if it exists.
      *
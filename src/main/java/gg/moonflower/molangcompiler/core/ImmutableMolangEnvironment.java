@@ -70,6 +70,11 @@ public class ImmutableMolangEnvironment implements MolangEnvironment {
         this.environment.setThisValue(thisValue);
     }
 
+    @Override
+    public long getEpoch() {
+        return this.environment.getEpoch();
+    }
+
     @Override
     public boolean canEdit() {
         return false;
@@ -0,0 +1,33 @@
+package gg.moonflower.molangcompiler.core;
+
+import gg.moonflower.molangcompiler.api.MolangBatchExpression;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.List;
+
+/**
+ * Base class for generated batch expressions.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public abstract class MolangBatchExpressionImpl implements MolangBatchExpression {
+
+    private final List<String> inputs;
+    private final String source;
+
+    protected MolangBatchExpressionImpl(List<String> inputs, String source) {
+        this.inputs = inputs;
+        this.source = source;
+    }
+
+    @Override
+    public List<String> getInputs() {
+        return this.inputs;
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+}
@@ -1,13 +1,38 @@
 package gg.moonflower.molangcompiler.core;
 
+import gg.moonflower.molangcompiler.api.MolangAnalysis;
+import gg.moonflower.molangcompiler.api.MolangBatchExpression;
+import gg.moonflower.molangcompiler.api.MolangCompilationListener;
 import gg.moonflower.molangcompiler.api.MolangCompiler;
 import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.MolangExpressionGroup;
+import gg.moonflower.molangcompiler.api.MolangMetrics;
 import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
 import gg.moonflower.molangcompiler.core.ast.Node;
 import gg.moonflower.molangcompiler.core.compiler.BytecodeCompiler;
+import gg.moonflower.molangcompiler.core.compiler.MolangAnalyzer;
+import gg.moonflower.molangcompiler.core.compiler.MolangCompilationStats;
 import gg.moonflower.molangcompiler.core.compiler.MolangLexer;
+import gg.moonflower.molangcompiler.core.compiler.MolangNodeReader;
+import gg.moonflower.molangcompiler.core.compiler.MolangNodeWriter;
 import gg.moonflower.molangcompiler.core.compiler.MolangParser;
+import gg.moonflower.molangcompiler.core.node.MolangDeferredNode;
+import gg.moonflower.molangcompiler.core.node.MolangMemoizedNode;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author Ocelot
@@ -16,18 +41,298 @@ import org.jetbrains.annotations.ApiStatus;
 public class MolangCompilerImpl implements MolangCompiler {
 
     private final BytecodeCompiler compiler;
+    private final List<MolangCompilationListener> listeners;
+    private final Map<ByteBuffer, InternedExpression> interned;
+    private final ReferenceQueue<MolangExpression> internedQueue;
+    private final Map<Class<?>, ByteBuffer> sources;
 
     public MolangCompilerImpl(int flags) {
-        this.compiler = new BytecodeCompiler(flags);
+        this(new BytecodeCompiler(flags));
     }
 
     public MolangCompilerImpl(int flags, ClassLoader classLoader) {
-        this.compiler = new BytecodeCompiler(flags, classLoader);
+        this(new BytecodeCompiler(flags, classLoader));
     }
 
-    public MolangExpression compile(String input) throws MolangSyntaxException {
+    private MolangCompilerImpl(BytecodeCompiler compiler) {
+        this.compiler = compiler;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.interned = new ConcurrentHashMap<>();
+        this.internedQueue = new ReferenceQueue<>();
+        // Expression classes are only weakly referenced, so a source is forgotten when its class unloads
+        this.sources = Collections.synchronizedMap(new WeakHashMap<>());
+    }
+
+    private static Node parse(String input, MolangCompilationStats stats) throws MolangSyntaxException {
         MolangLexer.Token[] tokens = MolangLexer.createTokens(input);
+        stats.lexed();
         Node node = MolangParser.parseTokens(tokens);
-        return this.compiler.build(node);
+        stats.parsed();
+        return node;
+    }
+
+    private void report(MolangCompilationStats stats, @Nullable MolangSyntaxException error) {
+        stats.finish(error != null);
+        if (this.listeners.isEmpty()) {
+            return;
+        }
+
+        MolangCompilationListener.Report report = stats.createReport(error);
+        for (MolangCompilationListener listener : this.listeners) {
+            listener.onCompiled(report);
+        }
+    }
+
+    /**
+     * Creates the key to intern the specified tree with. Trees are compared by their binary encoding instead of their printed form,
+     * because operators print without parentheses and different trees can print the same.
+     * The parser canonicalizes object names, so the key is the same for sources that only differ in whitespace, case, or aliases.
+     */
+    private static ByteBuffer createKey(Node node) throws MolangSyntaxException {
+        MolangNodeWriter writer = new MolangNodeWriter();
+        writer.add(node);
+        return ByteBuffer.wrap(writer.toByteArray());
+    }
+
+    /**
+     * Builds the specified tree or returns the expression already built from an equivalent tree.
+     */
+    private MolangExpression build(Node node, MolangCompilationStats stats) throws MolangSyntaxException {
+        ByteBuffer key = createKey(node);
+        MolangExpression expression = this.getInterned(key);
+        if (expression != null) {
+            return expression;
+        }
+
+        expression = this.compiler.build(node, stats);
+        if (!expression.isConstant()) {
+            this.interned.put(key, new InternedExpression(key, expression, this.internedQueue));
+            this.sources.put(expression.getClass(), key);
+        }
+        return expression;
+    }
+
+    private @Nullable MolangExpression getInterned(ByteBuffer key) {
+        Reference<? extends MolangExpression> collected;
+        while ((collected = this.internedQueue.poll()) != null) {
+            InternedExpression reference = (InternedExpression) collected;
+            this.interned.remove(reference.key, reference);
+        }
+
+        InternedExpression reference = this.interned.get(key);
+        MolangExpression expression = reference != null ? reference.get() : null;
+        return expression != null && !this.compiler.isRetired(MolangUtil.unwrap(expression)) ? expression : null;
+    }
+
+    /**
+     * Compiles an already parsed expression and reports it to listeners.
+     *
+     * @param node The expression to compile
+     * @return The compiled expression
+     * @throws MolangSyntaxException If any error occurs
+     */
+    public MolangExpression compile(Node node) throws MolangSyntaxException {
+        MolangCompilationStats stats = new MolangCompilationStats(node.toString());
+        try {
+            MolangExpression expression = this.build(node, stats);
+            this.report(stats, null);
+            return expression;
+        } catch (MolangSyntaxException e) {
+            this.report(stats, e);
+            throw e;
+        }
+    }
+
+    public MolangExpression compile(String input) throws MolangSyntaxException {
+        MolangCompilationStats stats = new MolangCompilationStats(input);
+        try {
+            MolangExpression expression = this.build(parse(input, stats), stats);
+            this.report(stats, null);
+            return expression;
+        } catch (MolangSyntaxException e) {
+            this.report(stats, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public MolangExpression compileMemoized(String input) throws MolangSyntaxException {
+        MolangCompilationStats stats = new MolangCompilationStats(input);
+        Node node;
+        try {
+            node = parse(input, stats);
+        } catch (MolangSyntaxException e) {
+            this.report(stats, e);
+            throw e;
+        }
+        return this.compileMemoized(node, stats);
+    }
+
+    private MolangExpression compileMemoized(Node node, MolangCompilationStats stats) throws MolangSyntaxException {
+        MolangExpression expression;
+        try {
+            expression = this.build(node, stats);
+            this.report(stats, null);
+        } catch (MolangSyntaxException e) {
+            this.report(stats, e);
+            throw e;
+        }
+
+        MolangAnalyzer analyzer = MolangAnalyzer.analyze(node);
+        if (expression.isConstant() || !analyzer.isMemoizable()) {
+            return expression;
+        }
+
+        Set<String> variables = analyzer.getVariables();
+        String[] objects = new String[variables.size()];
+        String[] names = new String[variables.size()];
+        int i = 0;
+        for (String variable : variables) {
+            String[] parts = variable.split("\\.", 2);
+            objects[i] = parts[0];
+            names[i] = parts[1];
+            i++;
+        }
+        return new MolangMemoizedNode(expression, objects, names, analyzer.usesThis());
+    }
+
+    @Override
+    public MolangExpression compileLazy(String input) throws MolangSyntaxException {
+        return this.compileLazy(MolangParser.parseTokens(MolangLexer.createTokens(input)));
+    }
+
+    private MolangExpression compileLazy(Node node) throws MolangSyntaxException {
+        MolangExpression expression = this.getInterned(createKey(node));
+        if (expression != null) {
+            return expression;
+        }
+        // Constants never generate a class, so there is nothing to defer
+        return node.isConstant() ? this.compile(node) : new MolangDeferredNode(this, node);
+    }
+
+    @Override
+    public byte[] encode(String... inputs) throws MolangSyntaxException {
+        MolangNodeWriter writer = new MolangNodeWriter();
+        for (String input : inputs) {
+            writer.add(MolangParser.parseTokens(MolangLexer.createTokens(input)));
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public MolangExpression[] compileEncoded(ByteBuffer buffer) throws MolangSyntaxException {
+        MolangNodeReader reader = new MolangNodeReader(buffer);
+        MolangExpression[] expressions = new MolangExpression[reader.size()];
+        for (int i = 0; i < expressions.length; i++) {
+            expressions[i] = this.compile(reader.read(i));
+        }
+        return expressions;
+    }
+
+    @Override
+    public MolangAnalysis analyze(String input) throws MolangSyntaxException {
+        MolangLexer.Token[] tokens = MolangLexer.createTokens(input);
+        return MolangAnalyzer.analyze(MolangParser.parseTokens(tokens));
+    }
+
+    @Override
+    public MolangBatchExpression compileBatch(String input, String... inputs) throws MolangSyntaxException {
+        MolangCompilationStats stats = new MolangCompilationStats(input);
+        try {
+            for (String name : inputs) {
+                if (name.split("\\.").length != 2) {
+                    throw new MolangSyntaxException("Expected batch input in the form object.name, got " + name);
+                }
+            }
+            MolangBatchExpression expression = this.compiler.buildBatch(parse(input, stats), Arrays.asList(inputs), stats);
+            this.report(stats, null);
+            return expression;
+        } catch (MolangSyntaxException e) {
+            this.report(stats, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public MolangExpressionGroup compileGroup(String... inputs) throws MolangSyntaxException {
+        MolangCompilationStats stats = new MolangCompilationStats(String.join("\n", inputs));
+        try {
+            Node[] nodes = new Node[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                nodes[i] = parse(inputs[i], stats);
+            }
+            MolangExpressionGroup group = this.compiler.buildGroup(stats, nodes);
+            this.report(stats, null);
+            return group;
+        } catch (MolangSyntaxException e) {
+            this.report(stats, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void addListener(MolangCompilationListener listener) {
+        this.listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(MolangCompilationListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    @Override
+    public void setClassBudget(int classBudget) {
+        this.compiler.setClassBudget(classBudget);
+    }
+
+    @Override
+    public void setLoopBudget(int loopBudget) {
+        this.compiler.setLoopBudget(loopBudget);
+        // Expressions compiled with the old budget must not be reused
+        this.interned.clear();
+    }
+
+    @Override
+    public MolangExpression refresh(MolangExpression expression) throws MolangSyntaxException {
+        MolangExpression delegate = MolangUtil.unwrap(expression);
+        if (!this.compiler.isRetired(delegate)) {
+            return expression;
+        }
+
+        // The printed form does not always parse back to the same tree, so the encoded tree is compiled again instead
+        ByteBuffer source = this.sources.get(delegate.getClass());
+        if (source == null) {
+            throw new MolangSyntaxException("Unknown source for expression '" + expression + "'");
+        }
+        Node node = new MolangNodeReader(source).read(0);
+
+        // Wrappers are compiled again the same way, so the result behaves like the original
+        if (expression instanceof MolangMemoizedNode) {
+            return this.compileMemoized(node, new MolangCompilationStats(node.toString()));
+        }
+        if (expression instanceof MolangDeferredNode) {
+            return this.compileLazy(node);
+        }
+        return this.compile(node);
+    }
+
+    @Override
+    public ClassStatistics getClassStatistics() {
+        return this.compiler.getStatistics();
+    }
+
+    @Override
+    public @Nullable MolangMetrics getMetrics() {
+        return this.compiler.getMetrics();
+    }
+
+    private static class InternedExpression extends WeakReference<MolangExpression> {
+
+        private final ByteBuffer key;
+
+        private InternedExpression(ByteBuffer key, MolangExpression expression, ReferenceQueue<MolangExpression> queue) {
+            super(expression, queue);
+            this.key = key;
+        }
     }
 }
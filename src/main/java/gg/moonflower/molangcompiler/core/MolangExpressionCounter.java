@@ -0,0 +1,116 @@
+package gg.moonflower.molangcompiler.core;
+
+import gg.moonflower.molangcompiler.api.MolangMetrics;
+import gg.moonflower.molangcompiler.core.jfr.MolangErrorEvent;
+import gg.moonflower.molangcompiler.core.jfr.MolangEvaluationEvent;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts calls into a single instrumented expression and times a sample of them.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+@SuppressWarnings("unused") // Methods are referenced in ASM
+public final class MolangExpressionCounter {
+
+    private static final VarHandle SAMPLES;
+    private static final VarHandle NANOS;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SAMPLES = lookup.findVarHandle(MolangExpressionCounter.class, "samples", long.class);
+            NANOS = lookup.findVarHandle(MolangExpressionCounter.class, "nanos", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MolangMetrics metrics;
+    private final String source;
+    private final long sampleMask;
+    private final LongAdder calls;
+    private int ticks;
+    private volatile long samples;
+    private volatile long nanos;
+
+    /**
+     * @param metrics The metrics this counter reports to
+     * @param source  The source of the expression
+     */
+    public MolangExpressionCounter(MolangMetrics metrics, String source) {
+        this.metrics = metrics;
+        this.source = source;
+        this.sampleMask = metrics.getSampleInterval() > 0 ? metrics.getSampleInterval() - 1 : -1L;
+        this.calls = new LongAdder();
+    }
+
+    /**
+     * Called when the expression starts running. Calls are timed when they are sampled or when slow evaluations are being recorded.
+     *
+     * @return The time the call started or <code>0</code> if this call is not timed. The lowest bit is set if the call is sampled
+     */
+    public long enter() {
+        this.calls.increment();
+        // Threads racing on the tick only skew which calls are sampled, so it does not need to be atomic
+        int tick = this.ticks++;
+        boolean sampled = this.sampleMask >= 0 && (tick & this.sampleMask) == 0;
+        if (!sampled && !MolangEvaluationEvent.isRecording()) {
+            return 0L;
+        }
+
+        // Losing a nanosecond of precision is cheaper than returning whether the call is sampled separately
+        long now = System.nanoTime();
+        return sampled ? now | 1L : now & ~1L;
+    }
+
+    /**
+     * Called when the expression finishes running.
+     *
+     * @param start The value returned by {@link #enter()}
+     */
+    public void exit(long start) {
+        if (start == 0L) {
+            return;
+        }
+
+        long time = System.nanoTime() - start;
+        if ((start & 1L) != 0) {
+            NANOS.getAndAdd(this, time);
+            SAMPLES.getAndAdd(this, 1L);
+        }
+        if (time >= this.metrics.getSlowThreshold()) {
+            MolangEvaluationEvent.record(this.source, time);
+        }
+    }
+
+    /**
+     * Called when the expression throws an exception.
+     *
+     * @param error The exception thrown
+     */
+    public void error(Throwable error) {
+        MolangErrorEvent.record(this.source, error);
+    }
+
+    /**
+     * Clears all recorded calls and times.
+     */
+    public void reset() {
+        this.calls.reset();
+        this.samples = 0L;
+        this.nanos = 0L;
+    }
+
+    /**
+     * @return A snapshot of the current values
+     */
+    public MolangMetrics.Entry snapshot() {
+        return new MolangMetrics.Entry(this.source, this.calls.sum(), this.samples, this.nanos);
+    }
+}
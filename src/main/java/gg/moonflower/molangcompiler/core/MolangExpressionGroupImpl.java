@@ -0,0 +1,31 @@
+package gg.moonflower.molangcompiler.core;
+
+import gg.moonflower.molangcompiler.api.MolangExpressionGroup;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.List;
+
+/**
+ * Base class for generated expression groups.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public abstract class MolangExpressionGroupImpl implements MolangExpressionGroup {
+
+    private final List<String> sources;
+
+    protected MolangExpressionGroupImpl(List<String> sources) {
+        this.sources = sources;
+    }
+
+    @Override
+    public int size() {
+        return this.sources.size();
+    }
+
+    @Override
+    public String toString() {
+        return this.sources.toString();
+    }
+}
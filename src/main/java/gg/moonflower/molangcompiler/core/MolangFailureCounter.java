@@ -0,0 +1,107 @@
+package gg.moonflower.molangcompiler.core;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Counts the unknown values read by a single expression class compiled with {@link gg.moonflower.molangcompiler.api.MolangCompiler#LENIENT_FLAG}.</p>
+ * <p>Messages are shared between every expression and logged at most once per {@linkplain #setLogInterval(long) interval},
+ * so malformed expressions evaluated every frame cannot flood the log.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public final class MolangFailureCounter {
+
+    private static final System.Logger LOGGER = System.getLogger("MoLang");
+    private static final ClassValue<MolangFailureCounter> COUNTERS = new ClassValue<>() {
+        @Override
+        protected MolangFailureCounter computeValue(Class<?> type) {
+            return new MolangFailureCounter();
+        }
+    };
+    private static final AtomicLong NEXT_LOG = new AtomicLong(System.nanoTime());
+    // Every suppressed message from every thread is counted, so this must not be a single contended value
+    private static final LongAdder SUPPRESSED = new LongAdder();
+    private static volatile long logInterval = TimeUnit.SECONDS.toNanos(10);
+
+    // Shared by every instance of the expression on every thread, so it is striped like the suppressed count
+    private final LongAdder failures;
+
+    private MolangFailureCounter() {
+        this.failures = new LongAdder();
+    }
+
+    /**
+     * @param type The class of the expression
+     * @return The counter for all instances of that class
+     */
+    public static MolangFailureCounter get(Class<?> type) {
+        return COUNTERS.get(type);
+    }
+
+    /**
+     * Records an unknown value read by the expression.
+     *
+     * @param kind The kind of value, for example <code>variable</code>
+     * @param name The name of the value
+     */
+    public void fail(String kind, String name) {
+        this.failures.increment();
+        if (shouldLog()) {
+            LOGGER.log(System.Logger.Level.WARNING, "Unknown MoLang {0} ''{1}'' evaluated as 0{2}", kind, name, getSuppressed());
+        }
+    }
+
+    /**
+     * Logs an error thrown while resolving an expression.
+     *
+     * @param error The error thrown
+     */
+    public static void log(Throwable error) {
+        if (shouldLog()) {
+            LOGGER.log(System.Logger.Level.WARNING, "Failed to resolve MoLang expression" + getSuppressed(), error);
+        }
+    }
+
+    private static boolean shouldLog() {
+        long now = System.nanoTime();
+        long next = NEXT_LOG.get();
+        if (now - next >= 0 && NEXT_LOG.compareAndSet(next, now + logInterval)) {
+            return true;
+        }
+        SUPPRESSED.increment();
+        return false;
+    }
+
+    private static String getSuppressed() {
+        long suppressed = SUPPRESSED.sumThenReset();
+        return suppressed > 0 ? " (" + suppressed + " similar messages suppressed)" : "";
+    }
+
+    /**
+     * @return The number of unknown values read by every instance of the expression
+     */
+    public long getFailures() {
+        return this.failures.sum();
+    }
+
+    /**
+     * @return The minimum time between logged messages in nanoseconds
+     */
+    public static long getLogInterval() {
+        return logInterval;
+    }
+
+    /**
+     * Sets the minimum time between logged messages. Messages in between are counted and summarized in the next message.
+     *
+     * @param nanos The minimum time in nanoseconds
+     */
+    public static void setLogInterval(long nanos) {
+        logInterval = Math.max(0, nanos);
+    }
+}
@@ -1,18 +1,23 @@
 package gg.moonflower.molangcompiler.core;
 
 import gg.moonflower.molangcompiler.api.MolangExpression;
-import gg.moonflower.molangcompiler.api.bridge.MolangVariable;
 import gg.moonflower.molangcompiler.api.exception.MolangException;
 import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import gg.moonflower.molangcompiler.api.object.ImmutableMolangObject;
 import gg.moonflower.molangcompiler.api.object.MolangObject;
-import gg.moonflower.molangcompiler.core.node.MolangConstantNode;
-import gg.moonflower.molangcompiler.core.node.MolangVariableNode;
+import gg.moonflower.molangcompiler.core.node.MolangArrayNode;
+import gg.moonflower.molangcompiler.core.node.MolangDelegatingNode;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadLocalRandom;
 
 @ApiStatus.Internal
 @SuppressWarnings("unused") // Methods are referenced in ASM
 public class MolangUtil {
 
+    private static final float[] ZERO_ARRAY = {0.0F};
+
     public static float clamp(float value, float min, float max) {
         return Math.max(min, Math.min(max, value));
     }
@@ -20,7 +25,7 @@ public class MolangUtil {
     public static float dieRoll(int num, float low, float high) {
         float sum = 0;
         for (int i = 0; i < num; i++) {
-            sum += low + Math.random() * (high - low);
+            sum += random(low, high);
         }
         return sum;
     }
@@ -59,7 +64,7 @@ public class MolangUtil {
     }
 
     public static float random(float low, float high) {
-        return (float) (low + Math.random() * (high - low));
+        return (float) (low + ThreadLocalRandom.current().nextDouble() * (high - low));
     }
 
     public static float triangleWave(float x, float wavelength) {
@@ -67,26 +72,85 @@ public class MolangUtil {
     }
 
     public static MolangExpression getFunction(MolangObject object, String name, String fullKey) throws MolangException {
+        MolangExpression function = findFunction(object, name, fullKey);
+        if (function == null) {
+            throw new MolangException("Unknown function: " + object + "." + fullKey + "()");
+        }
+        return function;
+    }
+
+    public static @Nullable MolangExpression findFunction(MolangObject object, String name, String fullKey) throws MolangRuntimeException {
         if (object.has(fullKey)) {
             return object.get(fullKey);
         } else if (object.has(name)) {
             return object.get(name);
-        } else {
-            throw new MolangException("Unknown function: " + object + "." + fullKey + "()");
         }
+        return null;
     }
 
-    public static void setValue(MolangObject object, String name, float value) throws MolangRuntimeException {
-        if (!object.has(name)) {
-            object.set(name, new MolangVariableNode(MolangVariable.create(value)));
-            return;
+    public static float[] getArray(MolangExpression value, String name) throws MolangRuntimeException {
+        if (value instanceof MolangArrayNode array) {
+            return array.getValues();
+        }
+        throw new MolangRuntimeException("Cannot index " + name + " since it is not an array");
+    }
+
+    public static float[] getArrayOrZero(MolangExpression value) {
+        return value instanceof MolangArrayNode array ? array.getValues() : ZERO_ARRAY;
+    }
+
+    public static void checkBatch(float[][] columns, int inputs, float[] output, int offset, int count) throws MolangRuntimeException {
+        if (offset < 0 || count < 0 || offset + count > output.length) {
+            throw new MolangRuntimeException("Rows " + offset + " to " + (offset + count) + " are out of bounds for " + output.length + " outputs");
+        }
+        if (columns.length < inputs) {
+            throw new MolangRuntimeException("Expected " + inputs + " input columns, got " + columns.length);
         }
+        for (int i = 0; i < inputs; i++) {
+            if (columns[i].length < offset + count) {
+                throw new MolangRuntimeException("Rows " + offset + " to " + (offset + count) + " are out of bounds for input column " + i + " with " + columns[i].length + " values");
+            }
+        }
+    }
+
+    public static void checkGroup(float[] output, int size) throws MolangRuntimeException {
+        if (output.length < size) {
+            throw new MolangRuntimeException("Expected at least " + size + " outputs, got " + output.length);
+        }
+    }
 
-        MolangExpression old = object.get(name);
-        if (old instanceof MolangVariable) {
-            ((MolangVariable) old).setValue(value);
-        } else {
-            object.set(name, new MolangConstantNode(value));
+    /**
+     * Looks through {@link ImmutableMolangObject} wrappers to find the object that actually stores values.
+     *
+     * @param object The object to unwrap
+     * @return The object backing the specified object
+     */
+    public static MolangObject unwrap(MolangObject object) {
+        // Subclasses may override get, so only the exact wrapper is safe to look through
+        while (object.getClass() == ImmutableMolangObject.class) {
+            object = ((ImmutableMolangObject) object).parent();
         }
+        return object;
+    }
+
+    /**
+     * Looks through expressions that only forward to another expression to find the compiled expression that actually runs.
+     *
+     * @param expression The expression to unwrap
+     * @return The innermost expression or the last wrapper if it has nothing to forward to yet
+     */
+    public static MolangExpression unwrap(MolangExpression expression) {
+        while (expression instanceof MolangDelegatingNode node) {
+            MolangExpression delegate = node.getDelegate();
+            if (delegate == null) {
+                break;
+            }
+            expression = delegate;
+        }
+        return expression;
+    }
+
+    public static void setValue(MolangObject object, String name, float value) throws MolangRuntimeException {
+        object.setFloat(name, value);
     }
 }
@@ -0,0 +1,86 @@
+package gg.moonflower.molangcompiler.core.ast;
+
+import gg.moonflower.molangcompiler.api.exception.MolangException;
+import gg.moonflower.molangcompiler.core.compiler.BytecodeCompiler;
+import gg.moonflower.molangcompiler.core.compiler.MolangBytecodeEnvironment;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Retrieves a value from an array and puts it onto the stack. Indices outside the array are clamped to the first or last value.
+ *
+ * @param object The object the array is stored in
+ * @param name   The name of the array
+ * @param index  The index of the value to get
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class ArrayGetNode implements Node {
+
+    private final String object;
+    private final String name;
+    private final Node index;
+
+    public ArrayGetNode(String object, String name, Node index) {
+        this.object = object;
+        this.name = name;
+        this.index = index;
+    }
+
+    @Override
+    public String toString() {
+        return this.object + "." + this.name + "[" + this.index + "]";
+    }
+
+    @Override
+    public boolean isConstant() {
+        return false;
+    }
+
+    @Override
+    public boolean hasValue() {
+        return true;
+    }
+
+    @Override
+    public Node[] children() {
+        return new Node[]{this.index};
+    }
+
+    @Override
+    public void writeBytecode(MethodNode method, MolangBytecodeEnvironment environment, @Nullable Label breakLabel, @Nullable Label continueLabel) throws MolangException {
+        int array = environment.loadArray(method, this.object, this.name);
+        method.visitVarInsn(Opcodes.ALOAD, array);
+
+        // Arrays are never empty, so the index can always be clamped into bounds
+        method.visitInsn(Opcodes.DUP);
+        method.visitInsn(Opcodes.ARRAYLENGTH);
+        method.visitInsn(Opcodes.ICONST_1);
+        method.visitInsn(Opcodes.ISUB);
+        if (environment.optimize() && this.index.isConstant()) {
+            BytecodeCompiler.writeIntConst(method, (int) this.index.evaluate(environment));
+        } else {
+            this.index.writeBytecode(method, environment, breakLabel, continueLabel);
+            method.visitInsn(Opcodes.F2I);
+        }
+        method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "min", "(II)I", false);
+        method.visitInsn(Opcodes.ICONST_0);
+        method.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Math", "max", "(II)I", false);
+        method.visitInsn(Opcodes.FALOAD);
+    }
+
+    public String object() {
+        return this.object;
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    public Node index() {
+        return this.index;
+    }
+}
@@ -41,6 +41,11 @@ public class BinaryConditionalNode implements Node {
         return false;
     }
 
+    @Override
+    public Node[] children() {
+        return new Node[]{this.value, this.branch};
+    }
+
     @Override
     public float evaluate(MolangBytecodeEnvironment environment) throws MolangException {
         return this.value.evaluate(environment) != 0.0F ? this.branch.evaluate(environment) : 0.0F;
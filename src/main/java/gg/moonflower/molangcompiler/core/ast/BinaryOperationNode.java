@@ -31,6 +31,13 @@ public class BinaryOperationNode implements Node {
         this.right = right;
     }
 
+    /**
+     * @return The operation to apply to both sides
+     */
+    public BinaryOperation operator() {
+        return this.operator;
+    }
+
     @Override
     public String toString() {
         return "(" + this.left + " " + this.operator + " " + this.right + ")";
@@ -46,6 +53,11 @@ public class BinaryOperationNode implements Node {
         return true;
     }
 
+    @Override
+    public Node[] children() {
+        return new Node[]{this.left, this.right};
+    }
+
     @Override
     public float evaluate(MolangBytecodeEnvironment environment) throws MolangException {
         float left = this.left.evaluate(environment);
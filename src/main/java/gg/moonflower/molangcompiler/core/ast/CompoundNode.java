@@ -41,6 +41,11 @@ public class CompoundNode implements Node {
         return this.nodes.length > 0 && this.nodes[this.nodes.length - 1].hasValue();
     }
 
+    @Override
+    public Node[] children() {
+        return this.nodes;
+    }
+
     @Override
     public float evaluate(MolangBytecodeEnvironment environment) throws MolangException {
         return this.nodes[0].evaluate(environment);
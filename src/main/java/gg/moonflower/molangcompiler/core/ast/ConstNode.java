@@ -23,6 +23,13 @@ public class ConstNode implements Node {
         this.value = value;
     }
 
+    /**
+     * @return The constant value
+     */
+    public float value() {
+        return this.value;
+    }
+
     @Override
     public String toString() {
         return String.valueOf(this.value);
@@ -2,6 +2,7 @@ package gg.moonflower.molangcompiler.core.ast;
 
 import gg.moonflower.molangcompiler.api.exception.MolangException;
 import gg.moonflower.molangcompiler.core.compiler.BytecodeCompiler;
+import gg.moonflower.molangcompiler.core.compiler.MolangCallSites;
 import gg.moonflower.molangcompiler.core.compiler.MolangBytecodeEnvironment;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
@@ -48,65 +49,41 @@ public class FunctionNode implements Node {
         return true;
     }
 
+    @Override
+    public Node[] children() {
+        return this.arguments;
+    }
+
     @Override
     public void writeBytecode(MethodNode method, MolangBytecodeEnvironment environment, @Nullable Label breakLabel, @Nullable Label continueLabel) throws MolangException {
         int objectIndex = environment.getObjectIndex(method, this.object);
-
-        // Function
         method.visitVarInsn(Opcodes.ALOAD, objectIndex);
-        method.visitLdcInsn(this.function);
-        method.visitLdcInsn(this.function + "$" + this.arguments.length);
-        method.visitMethodInsn(
-                Opcodes.INVOKESTATIC,
-                "gg/moonflower/molangcompiler/core/MolangUtil",
-                "getFunction",
-                "(Lgg/moonflower/molangcompiler/api/object/MolangObject;Ljava/lang/String;Ljava/lang/String;)Lgg/moonflower/molangcompiler/api/MolangExpression;",
-                false
-        );
-        int expressionIndex = environment.allocateVariable(this.object + "." + this.function + "$" + this.arguments.length);
-        method.visitVarInsn(Opcodes.ASTORE, expressionIndex);
+        method.visitVarInsn(Opcodes.ALOAD, BytecodeCompiler.RUNTIME_INDEX);
 
         // Parameters
         for (Node node : this.arguments) {
-            boolean full = !environment.optimize() || !node.isConstant();
-            if (full) {
-                node.writeBytecode(method, environment, breakLabel, continueLabel);
-            }
-
-            method.visitVarInsn(Opcodes.ALOAD, BytecodeCompiler.RUNTIME_INDEX);
-            if (full) {
-                method.visitInsn(Opcodes.SWAP);
-            } else {
+            if (environment.optimize() && node.isConstant()) {
                 BytecodeCompiler.writeFloatConst(method, node.evaluate(environment));
+            } else {
+                node.writeBytecode(method, environment, breakLabel, continueLabel);
             }
-            method.visitMethodInsn(
-                    Opcodes.INVOKEINTERFACE,
-                    "gg/moonflower/molangcompiler/api/MolangEnvironment",
-                    "loadParameter",
-                    "(F)V",
-                    true
-            );
         }
 
         // Resolve Function
-        method.visitVarInsn(Opcodes.ALOAD, expressionIndex);
-        method.visitVarInsn(Opcodes.ALOAD, BytecodeCompiler.RUNTIME_INDEX);
-        method.visitMethodInsn(
-                Opcodes.INVOKEINTERFACE,
-                "gg/moonflower/molangcompiler/api/MolangExpression",
-                "resolve",
-                "(Lgg/moonflower/molangcompiler/api/MolangEnvironment;)F",
-                true
+        method.visitInvokeDynamicInsn(
+                environment.lenient() ? "callOrZero" : "call",
+                MolangCallSites.getCallDescriptor(this.arguments.length),
+                MolangCallSites.CALL_BOOTSTRAP,
+                this.function,
+                this.function + "$" + this.arguments.length
         );
+    }
 
-        // Clear parameters
-        method.visitVarInsn(Opcodes.ALOAD, BytecodeCompiler.RUNTIME_INDEX);
-        method.visitMethodInsn(
-                Opcodes.INVOKEINTERFACE,
-                "gg/moonflower/molangcompiler/api/MolangEnvironment",
-                "clearParameters",
-                "()V",
-                true
-        );
+    public String object() {
+        return object;
+    }
+
+    public String function() {
+        return function;
     }
 }
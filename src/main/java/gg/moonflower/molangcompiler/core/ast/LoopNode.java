@@ -27,6 +27,20 @@ public class LoopNode implements Node {
         this.body = body;
     }
 
+    /**
+     * @return The number of iterations to loop
+     */
+    public Node iterations() {
+        return this.iterations;
+    }
+
+    /**
+     * @return The body of the loop
+     */
+    public Node body() {
+        return this.body;
+    }
+
     @Override
     public String toString() {
         return "loop(" + this.iterations + ", {" + this.body + "})";
@@ -42,6 +56,11 @@ public class LoopNode implements Node {
         return false;
     }
 
+    @Override
+    public Node[] children() {
+        return new Node[]{this.iterations, this.body};
+    }
+
     @Override
     public void writeBytecode(MethodNode method, MolangBytecodeEnvironment environment, @Nullable Label breakLabel, @Nullable Label continueLabel) throws MolangException {
         Label begin = new Label();
@@ -55,6 +74,7 @@ public class LoopNode implements Node {
         BytecodeCompiler.writeIntConst(method, 0); // int i = 0;
         method.visitLabel(begin);
 
+        environment.enterLoop();
         this.body.writeBytecode(method, environment, end, next);
         if (this.body.hasValue()) { // Must return void
             method.visitInsn(Opcodes.POP);
@@ -64,7 +84,9 @@ public class LoopNode implements Node {
         method.visitInsn(Opcodes.ICONST_1);
         method.visitInsn(Opcodes.IADD); // i++
         method.visitInsn(Opcodes.DUP2);
-        method.visitJumpInsn(Opcodes.IF_ICMPGT, begin);
+        environment.writeLoopJump(method, begin, end);
+        environment.exitLoop();
         method.visitLabel(end);
+        method.visitInsn(Opcodes.POP2); // Remove the iteration count and index
     }
 }
@@ -61,6 +61,11 @@ public class MathNode implements Node {
         return true;
     }
 
+    @Override
+    public Node[] children() {
+        return this.arguments;
+    }
+
     @Override
     public float evaluate(MolangBytecodeEnvironment environment) throws MolangException {
         float[] values = new float[this.arguments.length];
@@ -309,4 +314,8 @@ public class MathNode implements Node {
             }
         }
     }
-}
\ No newline at end of file
+
+    public MathOperation function() {
+        return function;
+    }
+}
@@ -38,6 +38,11 @@ public class NegateNode implements Node {
         return true;
     }
 
+    @Override
+    public Node[] children() {
+        return new Node[]{this.value};
+    }
+
     @Override
     public float evaluate(MolangBytecodeEnvironment environment) throws MolangException {
         return this.value.evaluate(environment) == 0.0F ? 1.0F : 0.0F;
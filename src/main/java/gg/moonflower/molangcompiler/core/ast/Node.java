@@ -26,6 +26,13 @@ public interface Node {
      */
     boolean hasValue();
 
+    /**
+     * @return All nodes directly contained in this node
+     */
+    default Node[] children() {
+        return new Node[0];
+    }
+
     /**
      * Attempts to statically evaluate this expression. This will fail if {@link #isConstant()} is <code>false</code>.
      *
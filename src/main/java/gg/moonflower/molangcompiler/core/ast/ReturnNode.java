@@ -39,6 +39,11 @@ public class ReturnNode implements Node {
         return false;
     }
 
+    @Override
+    public Node[] children() {
+        return new Node[]{this.value};
+    }
+
     @Override
     public float evaluate(MolangBytecodeEnvironment environment) throws MolangException {
         return this.value.evaluate(environment);
@@ -55,6 +60,6 @@ public class ReturnNode implements Node {
             }
         }
         environment.writeModifiedVariables(method);
-        method.visitInsn(Opcodes.FRETURN);
+        environment.writeReturn(method);
     }
 }
\ No newline at end of file
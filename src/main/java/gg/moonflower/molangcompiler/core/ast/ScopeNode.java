@@ -37,6 +37,11 @@ public class ScopeNode implements Node {
         return this.node.hasValue();
     }
 
+    @Override
+    public Node[] children() {
+        return new Node[]{this.node};
+    }
+
     @Override
     public float evaluate(MolangBytecodeEnvironment environment) throws MolangException {
         return this.node.evaluate(environment);
@@ -44,6 +44,11 @@ public class TernaryOperationNode implements Node {
         return this.left.hasValue() && this.right.hasValue();
     }
 
+    @Override
+    public Node[] children() {
+        return new Node[]{this.value, this.left, this.right};
+    }
+
     @Override
     public float evaluate(MolangBytecodeEnvironment environment) throws MolangException {
         return this.value.evaluate(environment) != 0.0F ? this.left.evaluate(environment) : this.right.evaluate(environment);
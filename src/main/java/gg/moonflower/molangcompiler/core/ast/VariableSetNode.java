@@ -51,6 +51,11 @@ public class VariableSetNode implements OptionalValueNode {
         return this.returnValue;
     }
 
+    @Override
+    public Node[] children() {
+        return new Node[]{this.value};
+    }
+
     @Override
     public void writeBytecode(MethodNode method, MolangBytecodeEnvironment environment, @Nullable Label breakLabel, @Nullable Label continueLabel) throws MolangException {
         if (!"temp".equals(this.object)) {
@@ -71,4 +76,12 @@ public class VariableSetNode implements OptionalValueNode {
     public VariableSetNode withReturnValue() {
         return this.returnValue ? this : new VariableSetNode(this.object, this.name, this.value, true);
     }
-}
\ No newline at end of file
+
+    public String object() {
+        return object;
+    }
+
+    public String name() {
+        return name;
+    }
+}
@@ -1,28 +1,37 @@
 package gg.moonflower.molangcompiler.core.compiler;
 
+import gg.moonflower.molangcompiler.api.MolangBatchExpression;
 import gg.moonflower.molangcompiler.api.MolangCompiler;
 import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.MolangExpressionGroup;
+import gg.moonflower.molangcompiler.api.MolangMetrics;
 import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.core.MolangExpressionCounter;
 import gg.moonflower.molangcompiler.core.ast.Node;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.UUID;
-import java.util.regex.Pattern;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author Buddy, Ocelot
  */
 @ApiStatus.Internal
-public class BytecodeCompiler extends ClassLoader {
+public class BytecodeCompiler {
 
     public static final int FLAG_OPTIMIZE = 1;
 
@@ -30,42 +39,69 @@ public class BytecodeCompiler extends ClassLoader {
     public static final int RUNTIME_INDEX = 1;
     public static final int VARIABLE_START = 2;
 
-    private static final Pattern DASH = Pattern.compile("-");
+    private static final AtomicLong CLASS_ID = new AtomicLong();
+    /**
+     * The number of calls between every timed call of an instrumented expression.
+     */
+    private static final int SAMPLE_INTERVAL = 64;
+    private static final String COUNTER = "gg/moonflower/molangcompiler/core/MolangExpressionCounter";
+    /**
+     * The default number of classes defined in a loader before it is retired.
+     */
+    public static final int DEFAULT_CLASS_BUDGET = 1024;
 
-    private final ThreadLocal<MolangBytecodeEnvironment> environment;
+    private final int flags;
     private final boolean writeClasses;
+    private final MolangMetrics metrics;
+    private final ClassLoader parent;
+    private final List<WeakReference<MolangClassLoader>> retired;
+    private final AtomicLong definedClasses;
+    private final AtomicLong definedBytes;
+    private MolangClassLoader classLoader;
+    private int classBudget;
+    private volatile int loopBudget;
 
     public BytecodeCompiler(int flags, ClassLoader parent) {
-        super(parent);
-        this.environment = ThreadLocal.withInitial(() -> new MolangBytecodeEnvironment(flags));
+        this.flags = flags;
+        this.metrics = (flags & MolangCompiler.INSTRUMENT_FLAG) > 0 ? new MolangMetrics(SAMPLE_INTERVAL) : null;
         this.writeClasses = (flags & MolangCompiler.WRITE_CLASSES_FLAG) > 0;
+        this.parent = parent;
+        this.retired = new ArrayList<>();
+        this.definedClasses = new AtomicLong();
+        this.definedBytes = new AtomicLong();
+        this.classLoader = new MolangClassLoader(this, parent);
+        this.classBudget = DEFAULT_CLASS_BUDGET;
     }
 
     public BytecodeCompiler(int flags) {
-        this(flags, getSystemClassLoader());
+        this(flags, ClassLoader.getSystemClassLoader());
     }
 
-    public MolangExpression build(Node node) throws MolangSyntaxException {
-        MolangBytecodeEnvironment environment = this.environment.get();
-        environment.reset();
+    public MolangExpression build(Node node, MolangCompilationStats stats) throws MolangSyntaxException {
+        // Compile state is only used for one class, so it never outlives the calling thread
+        MolangBytecodeEnvironment environment = new MolangBytecodeEnvironment(this.flags);
+        environment.setLoopBudget(this.loopBudget);
         try {
             if (environment.optimize() && node.isConstant()) {
-                return MolangExpression.of(node.evaluate(environment));
+                float value = node.evaluate(environment);
+                stats.folded();
+                return MolangExpression.of(value);
             }
 
-            ClassNode classNode = new ClassNode(Opcodes.ASM5);
-            classNode.version = Opcodes.V1_8;
-            classNode.superName = "java/lang/Object";
-            classNode.name = "Expression_" + DASH.matcher(UUID.randomUUID().toString()).replaceAll("");
-            classNode.access = Opcodes.ACC_PUBLIC;
+            ClassNode classNode = createClass("Expression_", "java/lang/Object");
             classNode.interfaces.add(MolangExpression.class.getName().replaceAll("\\.", "/"));
 
             MethodNode init = new MethodNode();
             init.access = Opcodes.ACC_PUBLIC;
             init.name = "<init>";
-            init.desc = "()V";
+            init.desc = this.metrics != null ? "(L" + COUNTER + ";)V" : "()V";
             init.visitVarInsn(Opcodes.ALOAD, 0);
             init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            if (this.metrics != null) {
+                init.visitVarInsn(Opcodes.ALOAD, 0);
+                init.visitVarInsn(Opcodes.ALOAD, 1);
+                init.visitFieldInsn(Opcodes.PUTFIELD, classNode.name, "counter", "L" + COUNTER + ";");
+            }
             init.visitInsn(Opcodes.RETURN);
             classNode.methods.add(init);
 
@@ -74,18 +110,32 @@ public class BytecodeCompiler extends ClassLoader {
             method.name = "get";
             method.desc = "(Lgg/moonflower/molangcompiler/api/MolangEnvironment;)F";
             method.exceptions = Arrays.asList("gg/moonflower/molangcompiler/api/exception/MolangRuntimeException");
+            if (this.metrics != null) {
+                // The expression itself is moved into another method, so returns from anywhere in it are still counted
+                method.access = Opcodes.ACC_PRIVATE;
+                method.name = "evaluate";
+                classNode.fields.add(new FieldNode(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "counter", "L" + COUNTER + ";", null, null));
+                classNode.methods.add(writeInstrumentedGet(classNode.name));
+            }
+            environment.writeLoopBudget(method, node);
             node.writeBytecode(method, environment, null, null);
             classNode.methods.add(method);
 
             String compiledSource = node.toString();
 
             MethodNode equals = new MethodNode();
+            Label equalsSame = new Label();
             Label equalsFail = new Label();
             Label equalsReturn = new Label();
             equals.access = Opcodes.ACC_PUBLIC;
             equals.name = "equals";
             equals.desc = "(Ljava/lang/Object;)Z";
 
+            // Equivalent expressions are interned by the compiler, so most comparisons end here
+            equals.visitVarInsn(Opcodes.ALOAD, 0);
+            equals.visitVarInsn(Opcodes.ALOAD, 1);
+            equals.visitJumpInsn(Opcodes.IF_ACMPEQ, equalsSame); // if (this == obj) goto equalsSame
+
             equals.visitVarInsn(Opcodes.ALOAD, 1);
             equals.visitTypeInsn(Opcodes.INSTANCEOF, "gg/moonflower/molangcompiler/api/MolangExpression");
             equals.visitJumpInsn(Opcodes.IFEQ, equalsFail); // if !(obj instanceof MolangExpression) goto equalsFail
@@ -96,6 +146,7 @@ public class BytecodeCompiler extends ClassLoader {
             equals.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
             equals.visitJumpInsn(Opcodes.IFEQ, equalsFail); // if !source.equals(obj.toString()) goto equalsFail
 
+            equals.visitLabel(equalsSame);
             BytecodeCompiler.writeIntConst(equals, 1);
             equals.visitJumpInsn(Opcodes.GOTO, equalsReturn);
 
@@ -123,22 +174,372 @@ public class BytecodeCompiler extends ClassLoader {
             toString.visitInsn(Opcodes.ARETURN);
             classNode.methods.add(toString);
 
-            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
-            classNode.accept(cw);
-            byte[] data = cw.toByteArray();
+            stats.generated(getLocalSlots(environment));
+            Class<?> expressionClass = this.defineClass(classNode, stats);
+            MolangExpression expression;
+            if (this.metrics != null) {
+                expression = (MolangExpression) expressionClass.getConstructor(MolangExpressionCounter.class).newInstance(this.metrics.createCounter(compiledSource));
+            } else {
+                expression = (MolangExpression) expressionClass.getConstructor().newInstance();
+            }
+            track(expression);
+            stats.defined();
+            return expression;
+        } catch (Throwable t) {
+            throw new MolangSyntaxException("Failed to convert expression '" + node + "' to bytecode", t);
+        }
+    }
+
+    public MolangBatchExpression buildBatch(Node node, List<String> inputs, MolangCompilationStats stats) throws MolangSyntaxException {
+        MolangBytecodeEnvironment environment = new MolangBytecodeEnvironment(this.flags);
+        environment.setLoopBudget(this.loopBudget);
+        try {
+            ClassNode classNode = createClass("BatchExpression_", "gg/moonflower/molangcompiler/core/MolangBatchExpressionImpl");
+
+            MethodNode init = new MethodNode();
+            init.access = Opcodes.ACC_PUBLIC;
+            init.name = "<init>";
+            init.desc = "(Ljava/util/List;Ljava/lang/String;)V";
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            init.visitVarInsn(Opcodes.ALOAD, 1);
+            init.visitVarInsn(Opcodes.ALOAD, 2);
+            init.visitMethodInsn(Opcodes.INVOKESPECIAL, classNode.superName, "<init>", "(Ljava/util/List;Ljava/lang/String;)V", false);
+            init.visitInsn(Opcodes.RETURN);
+            classNode.methods.add(init);
+
+            MethodNode method = new MethodNode();
+            method.access = Opcodes.ACC_PUBLIC;
+            method.name = "evaluate";
+            method.desc = "(Lgg/moonflower/molangcompiler/api/MolangEnvironment;[[F[FII)V";
+            method.exceptions = Arrays.asList("gg/moonflower/molangcompiler/api/exception/MolangRuntimeException");
+
+            int columnsIndex = environment.allocateVariable("$columns");
+            int outputIndex = environment.allocateVariable("$output");
+            int offsetIndex = environment.allocateVariable("$offset");
+            int countIndex = environment.allocateVariable("$count");
+            int endIndex = environment.allocateVariable("$end");
+            int rowIndex = environment.allocateVariable("$row");
+
+            method.visitVarInsn(Opcodes.ALOAD, columnsIndex);
+            BytecodeCompiler.writeIntConst(method, inputs.size());
+            method.visitVarInsn(Opcodes.ALOAD, outputIndex);
+            method.visitVarInsn(Opcodes.ILOAD, offsetIndex);
+            method.visitVarInsn(Opcodes.ILOAD, countIndex);
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, "gg/moonflower/molangcompiler/core/MolangUtil", "checkBatch", "([[FI[FII)V", false);
 
-            if (this.writeClasses) {
-                Path path = Paths.get(classNode.name + ".class");
-                if (!Files.exists(path)) {
-                    Files.createFile(path);
+            // Load every column once so the loop only indexes plain arrays
+            int[] columnIndices = new int[inputs.size()];
+            int[] inputIndices = new int[inputs.size()];
+            for (int i = 0; i < inputs.size(); i++) {
+                columnIndices[i] = environment.allocateVariable("$column" + i);
+                method.visitVarInsn(Opcodes.ALOAD, columnsIndex);
+                BytecodeCompiler.writeIntConst(method, i);
+                method.visitInsn(Opcodes.AALOAD);
+                method.visitVarInsn(Opcodes.ASTORE, columnIndices[i]);
+
+                String input = inputs.get(i);
+                inputIndices[i] = environment.allocateVariable(input);
+                String alias = getAlias(input);
+                if (alias != null) {
+                    environment.variables().put(alias, inputIndices[i]);
                 }
-                Files.write(path, data);
             }
 
-            return (MolangExpression) this.defineClass(classNode.name, data, 0, data.length).getConstructor().newInstance();
+            method.visitVarInsn(Opcodes.ILOAD, offsetIndex);
+            method.visitVarInsn(Opcodes.ILOAD, countIndex);
+            method.visitInsn(Opcodes.IADD);
+            method.visitVarInsn(Opcodes.ISTORE, endIndex);
+            method.visitVarInsn(Opcodes.ILOAD, offsetIndex);
+            method.visitVarInsn(Opcodes.ISTORE, rowIndex);
+
+            Label begin = new Label();
+            Label next = new Label();
+            Label end = new Label();
+
+            method.visitLabel(begin);
+            method.visitVarInsn(Opcodes.ILOAD, rowIndex);
+            method.visitVarInsn(Opcodes.ILOAD, endIndex);
+            method.visitJumpInsn(Opcodes.IF_ICMPGE, end);
+
+            for (int i = 0; i < inputs.size(); i++) {
+                method.visitVarInsn(Opcodes.ALOAD, columnIndices[i]);
+                method.visitVarInsn(Opcodes.ILOAD, rowIndex);
+                method.visitInsn(Opcodes.FALOAD);
+                method.visitVarInsn(Opcodes.FSTORE, inputIndices[i]);
+            }
+
+            // output[row] = value
+            environment.setReturnWriter(returnMethod -> {
+                returnMethod.visitVarInsn(Opcodes.ALOAD, outputIndex);
+                returnMethod.visitVarInsn(Opcodes.ILOAD, rowIndex);
+                returnMethod.visitInsn(Opcodes.DUP2_X1);
+                returnMethod.visitInsn(Opcodes.POP2);
+                returnMethod.visitInsn(Opcodes.FASTORE);
+                returnMethod.visitJumpInsn(Opcodes.GOTO, next);
+            });
+            environment.writeLoopBudget(method, node);
+            node.writeBytecode(method, environment, null, null);
+
+            method.visitLabel(next);
+            method.visitIincInsn(rowIndex, 1);
+            method.visitJumpInsn(Opcodes.GOTO, begin);
+            method.visitLabel(end);
+            method.visitInsn(Opcodes.RETURN);
+            classNode.methods.add(method);
+
+            stats.generated(getLocalSlots(environment));
+            MolangBatchExpression expression = (MolangBatchExpression) this.defineClass(classNode, stats)
+                    .getConstructor(List.class, String.class)
+                    .newInstance(List.copyOf(inputs), node.toString());
+            track(expression);
+            stats.defined();
+            return expression;
         } catch (Throwable t) {
-            throw new MolangSyntaxException("Failed to convert expression '" + node + "' to bytecode", t);
+            throw new MolangSyntaxException("Failed to convert batch expression '" + node + "' to bytecode", t);
+        }
+    }
+
+    public MolangExpressionGroup buildGroup(MolangCompilationStats stats, Node... nodes) throws MolangSyntaxException {
+        MolangBytecodeEnvironment environment = new MolangBytecodeEnvironment(this.flags);
+        environment.setLoopBudget(this.loopBudget);
+        try {
+            ClassNode classNode = createClass("ExpressionGroup_", "gg/moonflower/molangcompiler/core/MolangExpressionGroupImpl");
+
+            MethodNode init = new MethodNode();
+            init.access = Opcodes.ACC_PUBLIC;
+            init.name = "<init>";
+            init.desc = "(Ljava/util/List;)V";
+            init.visitVarInsn(Opcodes.ALOAD, 0);
+            init.visitVarInsn(Opcodes.ALOAD, 1);
+            init.visitMethodInsn(Opcodes.INVOKESPECIAL, classNode.superName, "<init>", "(Ljava/util/List;)V", false);
+            init.visitInsn(Opcodes.RETURN);
+            classNode.methods.add(init);
+
+            MethodNode method = new MethodNode();
+            method.access = Opcodes.ACC_PUBLIC;
+            method.name = "evaluate";
+            method.desc = "(Lgg/moonflower/molangcompiler/api/MolangEnvironment;[F)V";
+            method.exceptions = Arrays.asList("gg/moonflower/molangcompiler/api/exception/MolangRuntimeException");
+
+            int outputIndex = environment.allocateVariable("$output");
+            method.visitVarInsn(Opcodes.ALOAD, outputIndex);
+            BytecodeCompiler.writeIntConst(method, nodes.length);
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, "gg/moonflower/molangcompiler/core/MolangUtil", "checkGroup", "([FI)V", false);
+
+            // Every expression shares the same environment, so objects, variables, and temps are only loaded once
+            List<String> sources = new ArrayList<>(nodes.length);
+            for (int i = 0; i < nodes.length; i++) {
+                int outputSlot = i;
+                Label next = new Label();
+
+                // output[i] = value
+                environment.setReturnWriter(returnMethod -> {
+                    returnMethod.visitVarInsn(Opcodes.ALOAD, outputIndex);
+                    BytecodeCompiler.writeIntConst(returnMethod, outputSlot);
+                    returnMethod.visitInsn(Opcodes.DUP2_X1);
+                    returnMethod.visitInsn(Opcodes.POP2);
+                    returnMethod.visitInsn(Opcodes.FASTORE);
+                    returnMethod.visitJumpInsn(Opcodes.GOTO, next);
+                });
+                environment.writeLoopBudget(method, nodes[i]);
+                nodes[i].writeBytecode(method, environment, null, null);
+                method.visitLabel(next);
+                sources.add(nodes[i].toString());
+            }
+            method.visitInsn(Opcodes.RETURN);
+            classNode.methods.add(method);
+
+            stats.generated(getLocalSlots(environment));
+            MolangExpressionGroup group = (MolangExpressionGroup) this.defineClass(classNode, stats)
+                    .getConstructor(List.class)
+                    .newInstance(List.copyOf(sources));
+            track(group);
+            stats.defined();
+            return group;
+        } catch (Throwable t) {
+            throw new MolangSyntaxException("Failed to convert expression group " + Arrays.toString(nodes) + " to bytecode", t);
+        }
+    }
+
+    private static MethodNode writeInstrumentedGet(String className) {
+        MethodNode method = new MethodNode();
+        method.access = Opcodes.ACC_PUBLIC;
+        method.name = "get";
+        method.desc = "(Lgg/moonflower/molangcompiler/api/MolangEnvironment;)F";
+        method.exceptions = Arrays.asList("gg/moonflower/molangcompiler/api/exception/MolangRuntimeException");
+
+        // long start = this.counter.enter();
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitFieldInsn(Opcodes.GETFIELD, className, "counter", "L" + COUNTER + ";");
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, COUNTER, "enter", "()J", false);
+        method.visitVarInsn(Opcodes.LSTORE, 2);
+
+        // float result;
+        // try {
+        //     result = this.evaluate(environment);
+        // } catch (MolangException e) {
+        //     this.counter.error(e);
+        //     throw e;
+        // }
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        method.visitTryCatchBlock(tryStart, tryEnd, handler, "gg/moonflower/molangcompiler/api/exception/MolangException");
+        method.visitLabel(tryStart);
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitVarInsn(Opcodes.ALOAD, 1);
+        method.visitMethodInsn(Opcodes.INVOKESPECIAL, className, "evaluate", "(Lgg/moonflower/molangcompiler/api/MolangEnvironment;)F", false);
+        method.visitLabel(tryEnd);
+
+        // this.counter.exit(start);
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitFieldInsn(Opcodes.GETFIELD, className, "counter", "L" + COUNTER + ";");
+        method.visitVarInsn(Opcodes.LLOAD, 2);
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, COUNTER, "exit", "(J)V", false);
+        method.visitInsn(Opcodes.FRETURN);
+
+        method.visitLabel(handler);
+        method.visitInsn(Opcodes.DUP);
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitFieldInsn(Opcodes.GETFIELD, className, "counter", "L" + COUNTER + ";");
+        method.visitInsn(Opcodes.SWAP);
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, COUNTER, "error", "(Ljava/lang/Throwable;)V", false);
+        method.visitInsn(Opcodes.ATHROW);
+        return method;
+    }
+
+    /**
+     * @return The metrics of every expression built by this compiler or <code>null</code> if expressions are not instrumented
+     */
+    public @Nullable MolangMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    private static ClassNode createClass(String prefix, String superName) {
+        ClassNode classNode = new ClassNode(Opcodes.ASM5);
+        classNode.version = Opcodes.V1_8;
+        classNode.superName = superName;
+        classNode.name = prefix + CLASS_ID.incrementAndGet();
+        classNode.access = Opcodes.ACC_PUBLIC;
+        return classNode;
+    }
+
+    private static int getLocalSlots(MolangBytecodeEnvironment environment) {
+        return VARIABLE_START + environment.variables().size();
+    }
+
+    private Class<?> defineClass(ClassNode classNode, MolangCompilationStats stats) throws IOException {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        classNode.accept(cw);
+        byte[] data = cw.toByteArray();
+        stats.written(data.length);
+
+        if (this.writeClasses) {
+            Path path = Paths.get(classNode.name + ".class");
+            if (!Files.exists(path)) {
+                Files.createFile(path);
+            }
+            Files.write(path, data);
+        }
+
+        Class<?> definedClass = this.getClassLoader().define(classNode.name, data);
+        this.definedClasses.incrementAndGet();
+        this.definedBytes.addAndGet(data.length);
+        return definedClass;
+    }
+
+    private static void track(Object expression) {
+        ((MolangClassLoader) expression.getClass().getClassLoader()).track(expression);
+    }
+
+    /**
+     * Retrieves the loader to define new classes in. Once the current loader reaches the class budget, it is retired and a new one is started.
+     * Retired loaders are only weakly referenced, so they are unloaded as soon as every expression defined in them is collected.
+     *
+     * @return The loader for new classes
+     */
+    private synchronized MolangClassLoader getClassLoader() {
+        if (this.classLoader.getDefinedClasses() >= this.classBudget) {
+            this.retired.removeIf(reference -> reference.get() == null);
+            this.retired.add(new WeakReference<>(this.classLoader));
+            this.classLoader = new MolangClassLoader(this, this.parent);
+        }
+        return this.classLoader;
+    }
+
+    /**
+     * Sets the number of classes to define in a single loader before it is retired.
+     *
+     * @param classBudget The new budget
+     */
+    public synchronized void setClassBudget(int classBudget) {
+        if (classBudget < 1) {
+            throw new IllegalArgumentException("Class budget must be at least 1");
+        }
+        this.classBudget = classBudget;
+    }
+
+    /**
+     * Sets the number of times loops may repeat in a single evaluation of expressions built after this call.
+     *
+     * @param loopBudget The maximum number of repeats or <code>0</code> to disable the check
+     */
+    public void setLoopBudget(int loopBudget) {
+        if (loopBudget < 0) {
+            throw new IllegalArgumentException("Loop budget must not be negative");
+        }
+        this.loopBudget = loopBudget;
+    }
+
+    /**
+     * Checks whether the specified object was defined in a loader of this compiler that has been retired.
+     *
+     * @param object The object to check
+     * @return Whether the object keeps a retired loader from unloading
+     */
+    public synchronized boolean isRetired(Object object) {
+        return object.getClass().getClassLoader() instanceof MolangClassLoader loader && loader.getOwner() == this && loader != this.classLoader;
+    }
+
+    /**
+     * @return The number of classes and bytes defined by this compiler and how many are still loaded
+     */
+    public synchronized MolangCompiler.ClassStatistics getStatistics() {
+        long loadedClasses = 0;
+        long loadedBytes = 0;
+        int liveClasses = 0;
+        long liveBytes = 0;
+
+        this.retired.removeIf(reference -> reference.get() == null);
+        List<MolangClassLoader> loaders = new ArrayList<>(this.retired.size() + 1);
+        for (WeakReference<MolangClassLoader> reference : this.retired) {
+            MolangClassLoader loader = reference.get();
+            if (loader != null) {
+                loaders.add(loader);
+            }
         }
+        loaders.add(this.classLoader);
+        for (MolangClassLoader loader : loaders) {
+            loadedClasses += loader.getDefinedClasses();
+            loadedBytes += loader.getDefinedBytes();
+            liveClasses += loader.getLiveClasses();
+            liveBytes += loader.getLiveBytes();
+        }
+        return new MolangCompiler.ClassStatistics(this.definedClasses.get(), this.definedBytes.get(), loaders.size(), loadedClasses, loadedBytes, liveClasses, liveBytes);
+    }
+
+    private static @Nullable String getAlias(String name) {
+        String[] parts = name.split("\\.", 2);
+        String alias = switch (parts[0]) {
+            case "query" -> "q";
+            case "q" -> "query";
+            case "variable" -> "v";
+            case "v" -> "variable";
+            case "context" -> "c";
+            case "c" -> "context";
+            default -> null;
+        };
+        return alias != null ? alias + "." + parts[1] : null;
     }
 
     public static void writeFloatConst(MethodNode method, float value) {
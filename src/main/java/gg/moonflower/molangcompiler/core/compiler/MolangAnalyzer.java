@@ -0,0 +1,196 @@
+package gg.moonflower.molangcompiler.core.compiler;
+
+import gg.moonflower.molangcompiler.api.MolangAnalysis;
+import gg.moonflower.molangcompiler.api.exception.MolangException;
+import gg.moonflower.molangcompiler.core.ast.*;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Walks a parsed expression to find what it depends on.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangAnalyzer implements MolangAnalysis {
+
+    /**
+     * The number of iterations assumed for loops that do not run a constant number of times.
+     */
+    private static final int UNKNOWN_ITERATIONS = 16;
+    private static final int LOOKUP_COST = 2;
+    private static final int MATH_COST = 4;
+    private static final int CALL_COST = 16;
+
+    private final Set<String> variables;
+    private final Set<String> functions;
+    private final Set<String> reads;
+    private final Set<String> writes;
+    private final Set<String> calls;
+    private boolean usesThis;
+    private boolean random;
+    private boolean loops;
+    private boolean arrays;
+    private int cost;
+
+    private MolangAnalyzer() {
+        this.variables = new LinkedHashSet<>();
+        this.functions = new LinkedHashSet<>();
+        this.reads = new LinkedHashSet<>();
+        this.writes = new LinkedHashSet<>();
+        this.calls = new LinkedHashSet<>();
+    }
+
+    /**
+     * Analyzes the specified node and all of its children.
+     *
+     * @param node The node to analyze
+     * @return The analysis of the node
+     */
+    public static MolangAnalyzer analyze(Node node) {
+        MolangAnalyzer analyzer = new MolangAnalyzer();
+        analyzer.cost = analyzer.visit(node);
+        return analyzer;
+    }
+
+    /**
+     * Expands the built-in short names for objects.
+     *
+     * @param object The name of the object
+     * @return The full name of the object
+     */
+    public static String getCanonicalObject(String object) {
+        return switch (object) {
+            case "q" -> "query";
+            case "v" -> "variable";
+            case "c" -> "context";
+            case "t" -> "temp";
+            default -> object;
+        };
+    }
+
+    private int visit(Node node) {
+        int cost;
+        if (node instanceof ConstNode) {
+            cost = 0;
+        } else if (node instanceof VariableGetNode get) {
+            String object = getCanonicalObject(get.object());
+            if (!"temp".equals(object)) {
+                String name = object + "." + get.name();
+                this.variables.add(name);
+                this.reads.add(name);
+                cost = LOOKUP_COST;
+            } else {
+                cost = 1;
+            }
+        } else if (node instanceof ArrayGetNode get) {
+            // Arrays can change without their first value changing, so they are not cached inputs
+            this.arrays = true;
+            this.reads.add(getCanonicalObject(get.object()) + "." + get.name());
+            cost = LOOKUP_COST;
+        } else if (node instanceof VariableSetNode set) {
+            String object = getCanonicalObject(set.object());
+            if (!"temp".equals(object)) {
+                this.writes.add(object + "." + set.name());
+                cost = LOOKUP_COST;
+            } else {
+                cost = 1;
+            }
+        } else if (node instanceof FunctionNode function) {
+            String name = getCanonicalObject(function.object()) + "." + function.function();
+            this.functions.add(name);
+            this.reads.add(name);
+            this.calls.add(name);
+            cost = CALL_COST;
+        } else if (node instanceof MathNode math) {
+            this.calls.add("math." + math.function().getName());
+            if (!math.function().isDeterministic()) {
+                this.random = true;
+            }
+            cost = MATH_COST;
+        } else if (node instanceof LoopNode loop) {
+            this.loops = true;
+            int body = this.visit(loop.body());
+            return add(add(1, this.visit(loop.iterations())), (long) body * getIterations(loop.iterations()));
+        } else {
+            if (node instanceof ThisNode) {
+                this.usesThis = true;
+            }
+            cost = 1;
+        }
+
+        for (Node child : node.children()) {
+            cost = add(cost, this.visit(child));
+        }
+        return cost;
+    }
+
+    // Nested loops can easily exceed an int, so costs saturate instead of overflowing
+    private static int add(int cost, long extra) {
+        return (int) Math.min(Integer.MAX_VALUE, cost + extra);
+    }
+
+    private static int getIterations(Node iterations) {
+        if (iterations.isConstant()) {
+            try {
+                return Math.max(0, (int) iterations.evaluate(new MolangBytecodeEnvironment(0)));
+            } catch (MolangException ignored) {
+            }
+        }
+        return UNKNOWN_ITERATIONS;
+    }
+
+    /**
+     * @return Whether the result only depends on the variables read and the value of <code>this</code>, so it can be cached until any of them change
+     */
+    public boolean isMemoizable() {
+        return this.writes.isEmpty() && this.functions.isEmpty() && !this.random && !this.arrays;
+    }
+
+    /**
+     * @return Every variable read, without functions
+     */
+    public Set<String> getVariables() {
+        return Collections.unmodifiableSet(this.variables);
+    }
+
+    @Override
+    public Set<String> getReads() {
+        return Collections.unmodifiableSet(this.reads);
+    }
+
+    /**
+     * @return Whether the expression reads the value of <code>this</code>
+     */
+    public boolean usesThis() {
+        return this.usesThis;
+    }
+
+    @Override
+    public Set<String> getWrites() {
+        return Collections.unmodifiableSet(this.writes);
+    }
+
+    @Override
+    public Set<String> getCalls() {
+        return Collections.unmodifiableSet(this.calls);
+    }
+
+    @Override
+    public boolean usesRandom() {
+        return this.random;
+    }
+
+    @Override
+    public boolean hasLoops() {
+        return this.loops;
+    }
+
+    @Override
+    public int getCost() {
+        return this.cost;
+    }
+}
@@ -1,7 +1,12 @@
 package gg.moonflower.molangcompiler.core.compiler;
 
+import gg.moonflower.molangcompiler.api.MolangCompiler;
 import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.core.ast.LoopNode;
+import gg.moonflower.molangcompiler.core.ast.Node;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.MethodNode;
 
@@ -16,22 +21,36 @@ import java.util.Set;
 @ApiStatus.Internal
 public class MolangBytecodeEnvironment {
 
+    private static final String LOOP_BUDGET = "$loopBudget";
+
     private final Map<String, Integer> variables;
     private final Set<String> modifiedVariables;
     private final boolean optimize;
+    private final boolean lenient;
+    private ReturnWriter returnWriter;
+    private int loopBudget;
+    private int loopDepth;
 
     public MolangBytecodeEnvironment(Map<String, Integer> variables, Set<String> modifiedVariables, boolean optimize) {
+        this(variables, modifiedVariables, optimize, false);
+    }
+
+    public MolangBytecodeEnvironment(Map<String, Integer> variables, Set<String> modifiedVariables, boolean optimize, boolean lenient) {
         this.variables = variables;
         this.modifiedVariables = modifiedVariables;
         this.optimize = optimize;
+        this.lenient = lenient;
     }
 
     public MolangBytecodeEnvironment(MolangBytecodeEnvironment environment) {
-        this(new HashMap<>(environment.variables), new LinkedHashSet<>(), environment.optimize);
+        this(new HashMap<>(environment.variables), new LinkedHashSet<>(), environment.optimize, environment.lenient);
+        this.returnWriter = environment.returnWriter;
+        this.loopBudget = environment.loopBudget;
+        this.loopDepth = environment.loopDepth;
     }
 
     public MolangBytecodeEnvironment(int flags) {
-        this(new HashMap<>(), new LinkedHashSet<>(), (flags & BytecodeCompiler.FLAG_OPTIMIZE) > 0);
+        this(new HashMap<>(), new LinkedHashSet<>(), (flags & BytecodeCompiler.FLAG_OPTIMIZE) > 0, (flags & MolangCompiler.LENIENT_FLAG) > 0);
     }
 
     /**
@@ -40,6 +59,8 @@ public class MolangBytecodeEnvironment {
     public void reset() {
         this.variables.clear();
         this.modifiedVariables.clear();
+        this.returnWriter = null;
+        this.loopDepth = 0;
     }
 
     /**
@@ -60,14 +81,7 @@ public class MolangBytecodeEnvironment {
         // Get variable
         int objectIndex = this.getObjectIndex(method, object);
         method.visitVarInsn(Opcodes.ALOAD, objectIndex);
-        method.visitLdcInsn(name);
-        method.visitMethodInsn(
-                Opcodes.INVOKEINTERFACE,
-                "gg/moonflower/molangcompiler/api/object/MolangObject",
-                "get",
-                "(Ljava/lang/String;)Lgg/moonflower/molangcompiler/api/MolangExpression;",
-                true
-        );
+        method.visitInvokeDynamicInsn(this.lenient ? "getOrZero" : "get", MolangCallSites.GET_DESCRIPTOR, MolangCallSites.GET_BOOTSTRAP, name);
 
         // Resolve value
         method.visitVarInsn(Opcodes.ALOAD, BytecodeCompiler.RUNTIME_INDEX);
@@ -85,6 +99,38 @@ public class MolangBytecodeEnvironment {
         return index;
     }
 
+    /**
+     * Loads the values of the specified array into a local variable if necessary.
+     *
+     * @param method The method to insert the local into if not present
+     * @param object The object to get the array from
+     * @param name   The name of the array to get
+     * @return The index of the local variable the array is stored in
+     */
+    public int loadArray(MethodNode method, String object, String name) {
+        String key = object + "." + name + "[]";
+        Integer index = this.variables.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        int objectIndex = this.getObjectIndex(method, object);
+        method.visitVarInsn(Opcodes.ALOAD, objectIndex);
+        if (this.lenient) {
+            // Unknown values and values that are not arrays are read as a single 0
+            method.visitInvokeDynamicInsn("getOrZero", MolangCallSites.GET_DESCRIPTOR, MolangCallSites.GET_BOOTSTRAP, name);
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, "gg/moonflower/molangcompiler/core/MolangUtil", "getArrayOrZero", "(Lgg/moonflower/molangcompiler/api/MolangExpression;)[F", false);
+        } else {
+            method.visitInvokeDynamicInsn("get", MolangCallSites.GET_DESCRIPTOR, MolangCallSites.GET_BOOTSTRAP, name);
+            method.visitLdcInsn(object + "." + name);
+            method.visitMethodInsn(Opcodes.INVOKESTATIC, "gg/moonflower/molangcompiler/core/MolangUtil", "getArray", "(Lgg/moonflower/molangcompiler/api/MolangExpression;Ljava/lang/String;)[F", false);
+        }
+
+        index = this.allocateVariable(key);
+        method.visitVarInsn(Opcodes.ASTORE, index);
+        return index;
+    }
+
     /**
      * Allocates a space for a new variable, but doesn't initialize it.
      *
@@ -118,13 +164,18 @@ public class MolangBytecodeEnvironment {
         index = this.allocateVariable(object);
 
         method.visitVarInsn(Opcodes.ALOAD, BytecodeCompiler.RUNTIME_INDEX);
-        method.visitLdcInsn(object);
-        method.visitMethodInsn(
-                Opcodes.INVOKEINTERFACE,
-                "gg/moonflower/molangcompiler/api/MolangEnvironment",
-                "get",
-                "(Ljava/lang/String;)Lgg/moonflower/molangcompiler/api/object/MolangObject;",
-                true);
+        if (this.lenient) {
+            // Unknown objects are replaced with an empty object instead of throwing
+            method.visitInvokeDynamicInsn("getObject", MolangCallSites.OBJECT_DESCRIPTOR, MolangCallSites.GET_BOOTSTRAP, object);
+        } else {
+            method.visitLdcInsn(object);
+            method.visitMethodInsn(
+                    Opcodes.INVOKEINTERFACE,
+                    "gg/moonflower/molangcompiler/api/MolangEnvironment",
+                    "get",
+                    "(Ljava/lang/String;)Lgg/moonflower/molangcompiler/api/object/MolangObject;",
+                    true);
+        }
         method.visitVarInsn(Opcodes.ASTORE, index);
 
         return index;
@@ -201,24 +252,136 @@ public class MolangBytecodeEnvironment {
             int objectIndex = this.getObjectIndex(method, parts[0]);
 
             method.visitVarInsn(Opcodes.ALOAD, objectIndex);
-            method.visitLdcInsn(parts[1]);
             method.visitVarInsn(Opcodes.FLOAD, index);
-            method.visitMethodInsn(
-                    Opcodes.INVOKESTATIC,
-                    "gg/moonflower/molangcompiler/core/MolangUtil",
-                    "setValue",
-                    "(Lgg/moonflower/molangcompiler/api/object/MolangObject;Ljava/lang/String;F)V",
-                    false
-            );
+            method.visitInvokeDynamicInsn(this.lenient ? "setIfMutable" : "set", MolangCallSites.SET_DESCRIPTOR, MolangCallSites.SET_BOOTSTRAP, parts[1]);
         }
         this.modifiedVariables.clear();
     }
 
+    /**
+     * Writes the instructions to return the float on the top of the stack from the expression.
+     *
+     * @param method The method to write the return into
+     */
+    public void writeReturn(MethodNode method) {
+        if (this.returnWriter != null) {
+            // Return writers jump out of the expression, so the iteration count and index of every enclosing loop must be removed below the value
+            for (int i = 0; i < this.loopDepth; i++) {
+                method.visitInsn(Opcodes.DUP_X2);
+                method.visitInsn(Opcodes.POP);
+                method.visitInsn(Opcodes.POP2);
+            }
+            this.returnWriter.writeReturn(method);
+        } else {
+            method.visitInsn(Opcodes.FRETURN);
+        }
+    }
+
+    /**
+     * Sets how values are returned from the expression. Setting <code>null</code> will return the value from the method.
+     *
+     * @param returnWriter The new return writer
+     */
+    public void setReturnWriter(@Nullable ReturnWriter returnWriter) {
+        this.returnWriter = returnWriter;
+    }
+
+    /**
+     * Sets the number of times loops may repeat in a single evaluation. Values less than 1 disable the check.
+     *
+     * @param loopBudget The maximum number of repeats
+     */
+    public void setLoopBudget(int loopBudget) {
+        this.loopBudget = Math.max(0, loopBudget);
+    }
+
+    /**
+     * Resets the remaining loop budget if the specified expression contains any loops.
+     * This must be called before the expression is written, so every loop in it sees an initialized budget.
+     *
+     * @param method The method to write the budget into
+     * @param node   The expression that will be written next
+     */
+    public void writeLoopBudget(MethodNode method, Node node) {
+        if (this.loopBudget > 0 && hasLoop(node)) {
+            BytecodeCompiler.writeIntConst(method, this.loopBudget);
+            method.visitVarInsn(Opcodes.ISTORE, this.allocateVariable(LOOP_BUDGET));
+        }
+    }
+
+    /**
+     * Writes the jump back to the start of a loop if the iteration count on the stack is greater than the index above it.
+     * The stack below must contain the iteration count and index of every enclosing loop.
+     * If the loop budget runs out, the evaluation stops and returns <code>0</code> without writing back any modified variables.
+     *
+     * @param method The method to write the jump into
+     * @param begin  The start of the loop body
+     * @param end    The end of the loop
+     */
+    public void writeLoopJump(MethodNode method, Label begin, Label end) {
+        if (this.loopBudget <= 0) {
+            method.visitJumpInsn(Opcodes.IF_ICMPGT, begin);
+            return;
+        }
+
+        method.visitJumpInsn(Opcodes.IF_ICMPLE, end);
+        int index = this.allocateVariable(LOOP_BUDGET);
+        method.visitIincInsn(index, -1);
+        method.visitVarInsn(Opcodes.ILOAD, index);
+        method.visitJumpInsn(Opcodes.IFGE, begin);
+
+        // Out of budget, so return 0
+        method.visitInsn(Opcodes.FCONST_0);
+        this.writeReturn(method);
+    }
+
+    /**
+     * Marks the start of a loop body. Every call must be followed by {@link #exitLoop()}.
+     */
+    public void enterLoop() {
+        this.loopDepth++;
+    }
+
+    /**
+     * Marks the end of a loop body.
+     */
+    public void exitLoop() {
+        this.loopDepth--;
+    }
+
+    private static boolean hasLoop(Node node) {
+        if (node instanceof LoopNode) {
+            return true;
+        }
+        for (Node child : node.children()) {
+            if (hasLoop(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public boolean optimize() {
         return optimize;
     }
 
+    /**
+     * @return Whether unknown values should be read as <code>0</code> instead of throwing
+     */
+    public boolean lenient() {
+        return this.lenient;
+    }
+
     public Map<String, Integer> variables() {
         return variables;
     }
+
+    /**
+     * Writes the instructions to consume a returned float from the stack.
+     */
+    @FunctionalInterface
+    public interface ReturnWriter {
+
+        void writeReturn(MethodNode method);
+    }
 }
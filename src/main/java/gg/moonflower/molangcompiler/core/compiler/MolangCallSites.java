@@ -0,0 +1,451 @@
+package gg.moonflower.molangcompiler.core.compiler;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.bridge.MolangVariable;
+import gg.moonflower.molangcompiler.api.exception.MolangException;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import gg.moonflower.molangcompiler.api.object.MolangLibrary;
+import gg.moonflower.molangcompiler.api.object.MolangObject;
+import gg.moonflower.molangcompiler.core.MolangFailureCounter;
+import gg.moonflower.molangcompiler.core.MolangUtil;
+import gg.moonflower.molangcompiler.core.node.MolangStaticFunctionNode;
+import gg.moonflower.molangcompiler.core.object.MolangVariableStorage;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.invoke.*;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.function.BiConsumer;
+
+/**
+ * Bootstrap methods for the <code>invokedynamic</code> member lookups, writes, and function calls emitted into compiled expressions.
+ * <p>Each call site keeps a small inline cache of the expression resolved for every object it has seen.
+ * Entries are guarded by object identity and a {@link SwitchPoint} invalidated whenever the object is mutated,
+ * so repeated lookups on the same object do not touch the underlying map.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public final class MolangCallSites {
+
+    public static final String GET_DESCRIPTOR = "(Lgg/moonflower/molangcompiler/api/object/MolangObject;)Lgg/moonflower/molangcompiler/api/MolangExpression;";
+    public static final Handle GET_BOOTSTRAP = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            "gg/moonflower/molangcompiler/core/compiler/MolangCallSites",
+            "bootstrapGet",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;)Ljava/lang/invoke/CallSite;",
+            false
+    );
+    public static final String OBJECT_DESCRIPTOR = "(Lgg/moonflower/molangcompiler/api/MolangEnvironment;)Lgg/moonflower/molangcompiler/api/object/MolangObject;";
+    public static final String SET_DESCRIPTOR = "(Lgg/moonflower/molangcompiler/api/object/MolangObject;F)V";
+    public static final Handle SET_BOOTSTRAP = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            "gg/moonflower/molangcompiler/core/compiler/MolangCallSites",
+            "bootstrapSet",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;)Ljava/lang/invoke/CallSite;",
+            false
+    );
+    public static final Handle CALL_BOOTSTRAP = new Handle(
+            Opcodes.H_INVOKESTATIC,
+            "gg/moonflower/molangcompiler/core/compiler/MolangCallSites",
+            "bootstrapCall",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;Ljava/lang/String;)Ljava/lang/invoke/CallSite;",
+            false
+    );
+
+    /**
+     * The maximum number of objects a single call site will cache before falling back to a plain lookup.
+     */
+    private static final int MAX_DEPTH = 8;
+    /**
+     * Libraries can never be modified, so they share a switch point that is never invalidated.
+     */
+    private static final SwitchPoint CONSTANT = new SwitchPoint();
+    /**
+     * Stands in for unknown objects in lenient expressions. It has no values and cannot be modified.
+     */
+    private static final MolangObject EMPTY = new MolangLibrary() {
+        @Override
+        protected void populate(BiConsumer<String, MolangExpression> consumer) {
+        }
+
+        @Override
+        protected String getName() {
+            return "empty";
+        }
+    };
+
+    private static final MethodHandle GET;
+    private static final MethodHandle GET_FALLBACK;
+    private static final MethodHandle GET_OR_ZERO;
+    private static final MethodHandle GET_OBJECT;
+    private static final MethodHandle SET;
+    private static final MethodHandle SET_FALLBACK;
+    private static final MethodHandle SET_IF_MUTABLE;
+    private static final MethodHandle SET_VALUE;
+    private static final MethodHandle CALL;
+    private static final MethodHandle CALL_FALLBACK;
+    private static final MethodHandle CALL_OR_ZERO;
+    private static final MethodHandle INVOKE;
+    private static final MethodHandle[] INVOKE_ARITY;
+    private static final MethodHandle IS_CACHED;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            GET = lookup.findVirtual(MolangObject.class, "get", MethodType.methodType(MolangExpression.class, String.class));
+            GET_FALLBACK = lookup.findVirtual(GetCallSite.class, "fallback", MethodType.methodType(MolangExpression.class, MolangObject.class));
+            GET_OR_ZERO = lookup.findStatic(MolangCallSites.class, "getOrZero", MethodType.methodType(MolangExpression.class, MolangFailureCounter.class, String.class, MolangObject.class));
+            GET_OBJECT = lookup.findStatic(MolangCallSites.class, "getObject", MethodType.methodType(MolangObject.class, MolangFailureCounter.class, String.class, MolangEnvironment.class));
+            SET = lookup.findVirtual(MolangObject.class, "setFloat", MethodType.methodType(void.class, String.class, float.class));
+            SET_FALLBACK = lookup.findVirtual(SetCallSite.class, "fallback", MethodType.methodType(void.class, MolangObject.class, float.class));
+            SET_IF_MUTABLE = lookup.findStatic(MolangCallSites.class, "setIfMutable", MethodType.methodType(void.class, MolangFailureCounter.class, String.class, MolangObject.class, float.class));
+            SET_VALUE = lookup.findVirtual(MolangVariable.class, "setValue", MethodType.methodType(void.class, float.class));
+            CALL = lookup.findStatic(MolangCallSites.class, "call", MethodType.methodType(float.class, String.class, String.class, MolangObject.class, MolangEnvironment.class, float[].class));
+            CALL_FALLBACK = lookup.findVirtual(FunctionCallSite.class, "fallback", MethodType.methodType(float.class, MolangObject.class, MolangEnvironment.class, float[].class));
+            CALL_OR_ZERO = lookup.findStatic(MolangCallSites.class, "callOrZero", MethodType.methodType(float.class, MolangFailureCounter.class, String.class, String.class, MolangObject.class, MolangEnvironment.class, float[].class));
+            INVOKE = lookup.findStatic(MolangCallSites.class, "invoke", MethodType.methodType(float.class, MolangExpression.class, MolangEnvironment.class, float[].class));
+            INVOKE_ARITY = new MethodHandle[5];
+            for (int i = 0; i < INVOKE_ARITY.length; i++) {
+                MethodType type = MethodType.methodType(float.class, MolangExpression.class, MolangEnvironment.class);
+                INVOKE_ARITY[i] = lookup.findStatic(MolangCallSites.class, "invoke", type.appendParameterTypes(Collections.nCopies(i, float.class)));
+            }
+            IS_CACHED = lookup.findStatic(MolangCallSites.class, "isCached", MethodType.methodType(boolean.class, WeakReference.class, MolangObject.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private MolangCallSites() {
+    }
+
+    /**
+     * Links a call site that retrieves a single value from an object.
+     *
+     * <p>Sites named <code>getOrZero</code> return {@link MolangExpression#ZERO} for unknown values,
+     * and sites named <code>getObject</code> take the environment and return an empty object for unknown objects.</p>
+     *
+     * @param lookup The caller lookup
+     * @param name   The name of the dynamic method
+     * @param type   The type of the call site, either {@link #GET_DESCRIPTOR} or {@link #OBJECT_DESCRIPTOR}
+     * @param member The name of the value to get
+     * @return A new call site for the value
+     */
+    public static CallSite bootstrapGet(MethodHandles.Lookup lookup, String name, MethodType type, String member) {
+        return switch (name) {
+            case "getOrZero" -> new GetCallSite(type, member, MolangFailureCounter.get(lookup.lookupClass()));
+            case "getObject" -> new ConstantCallSite(MethodHandles.insertArguments(GET_OBJECT, 0, MolangFailureCounter.get(lookup.lookupClass()), member));
+            default -> new GetCallSite(type, member, null);
+        };
+    }
+
+    /**
+     * Links a call site that writes a single value into an object. The variable backing the value is cached, so writes do not look up or allocate anything.
+     *
+     * @param lookup The caller lookup
+     * @param name   The name of the dynamic method
+     * @param type   The type of the call site, always {@link #SET_DESCRIPTOR}
+     * @param member The name of the value to set
+     * @return A new call site for the value
+     */
+    public static CallSite bootstrapSet(MethodHandles.Lookup lookup, String name, MethodType type, String member) {
+        return new SetCallSite(type, member, "setIfMutable".equals(name) ? MolangFailureCounter.get(lookup.lookupClass()) : null);
+    }
+
+    /**
+     * Links a call site that invokes a function on an object. The call site takes the object, the environment, and every argument as a float.
+     * Functions created with {@link MolangExpression#function(MethodHandle)} are invoked directly without loading parameters into the environment.
+     *
+     * @param lookup   The caller lookup
+     * @param name     The name of the dynamic method
+     * @param type     The type of the call site
+     * @param function The name of the function to call
+     * @param fullKey  The name of the function including the number of parameters
+     * @return A new call site for the function
+     */
+    public static CallSite bootstrapCall(MethodHandles.Lookup lookup, String name, MethodType type, String function, String fullKey) {
+        return new FunctionCallSite(type, function, fullKey, "callOrZero".equals(name) ? MolangFailureCounter.get(lookup.lookupClass()) : null);
+    }
+
+    /**
+     * @param parameters The number of arguments passed to the function
+     * @return The descriptor of a function call site taking the specified number of arguments
+     */
+    public static String getCallDescriptor(int parameters) {
+        return "(Lgg/moonflower/molangcompiler/api/object/MolangObject;Lgg/moonflower/molangcompiler/api/MolangEnvironment;" + "F".repeat(parameters) + ")F";
+    }
+
+    private static float call(String function, String fullKey, MolangObject object, MolangEnvironment environment, float[] arguments) throws MolangException {
+        return invoke(MolangUtil.getFunction(object, function, fullKey), environment, arguments);
+    }
+
+    private static float invoke(MolangExpression expression, MolangEnvironment environment, float[] arguments) throws MolangRuntimeException {
+        for (float argument : arguments) {
+            environment.loadParameter(argument);
+        }
+        return invoke(expression, environment);
+    }
+
+    // Common arities avoid collecting the arguments into an array on every call
+
+    private static float invoke(MolangExpression expression, MolangEnvironment environment) throws MolangRuntimeException {
+        try {
+            return environment.resolve(expression);
+        } finally {
+            environment.clearParameters();
+        }
+    }
+
+    private static float invoke(MolangExpression expression, MolangEnvironment environment, float a) throws MolangRuntimeException {
+        environment.loadParameter(a);
+        return invoke(expression, environment);
+    }
+
+    private static float invoke(MolangExpression expression, MolangEnvironment environment, float a, float b) throws MolangRuntimeException {
+        environment.loadParameter(a);
+        environment.loadParameter(b);
+        return invoke(expression, environment);
+    }
+
+    private static float invoke(MolangExpression expression, MolangEnvironment environment, float a, float b, float c) throws MolangRuntimeException {
+        environment.loadParameter(a);
+        environment.loadParameter(b);
+        environment.loadParameter(c);
+        return invoke(expression, environment);
+    }
+
+    private static float invoke(MolangExpression expression, MolangEnvironment environment, float a, float b, float c, float d) throws MolangRuntimeException {
+        environment.loadParameter(a);
+        environment.loadParameter(b);
+        environment.loadParameter(c);
+        environment.loadParameter(d);
+        return invoke(expression, environment);
+    }
+
+    private static float callOrZero(MolangFailureCounter failures, String function, String fullKey, MolangObject object, MolangEnvironment environment, float[] arguments) throws MolangRuntimeException {
+        MolangExpression expression = MolangUtil.findFunction(object, function, fullKey);
+        if (expression == null) {
+            fail(failures, object, "function", fullKey);
+            return 0.0F;
+        }
+        return invoke(expression, environment, arguments);
+    }
+
+    private static void setIfMutable(MolangFailureCounter failures, String name, MolangObject object, float value) throws MolangRuntimeException {
+        if (object.isMutable()) {
+            object.setFloat(name, value);
+        } else {
+            fail(failures, object, "writable variable", name);
+        }
+    }
+
+    private static MolangExpression getOrZero(MolangFailureCounter failures, String name, MolangObject object) throws MolangRuntimeException {
+        if (object.has(name)) {
+            return object.get(name);
+        }
+        fail(failures, object, "variable", name);
+        return MolangExpression.ZERO;
+    }
+
+    private static void fail(MolangFailureCounter failures, MolangObject object, String kind, String name) {
+        // Unknown objects were already counted when they were loaded
+        if (object != EMPTY) {
+            failures.fail(kind, name);
+        }
+    }
+
+    private static MolangObject getObject(MolangFailureCounter failures, String name, MolangEnvironment environment) throws MolangRuntimeException {
+        if (environment.has(name)) {
+            return environment.get(name);
+        }
+        failures.fail("object", name);
+        return EMPTY;
+    }
+
+    private static boolean isCached(WeakReference<MolangObject> cached, MolangObject object) {
+        return cached.get() == MolangUtil.unwrap(object);
+    }
+
+    private static @Nullable SwitchPoint getSwitchPoint(MolangObject object) {
+        if (object instanceof MolangVariableStorage storage) {
+            return storage.getSwitchPoint();
+        }
+        if (object instanceof MolangLibrary) {
+            return CONSTANT;
+        }
+        return null;
+    }
+
+    private abstract static class CachingCallSite extends MutableCallSite {
+
+        private final MethodHandle uncached;
+        private MethodHandle fallback;
+        private int depth;
+
+        private CachingCallSite(MethodType type, MethodHandle uncached) {
+            super(type);
+            this.uncached = uncached;
+        }
+
+        /**
+         * Sets the handle used to resolve and link objects that are not in the cache yet.
+         *
+         * @param fallback The handle to use when the cache misses. It must match the type of this call site
+         */
+        protected void setFallback(MethodHandle fallback) {
+            this.fallback = fallback;
+            this.setTarget(fallback);
+        }
+
+        /**
+         * Checks whether the specified object can be cached, so the handle for it is only created if it will be used.
+         * Objects that cannot be cached count towards the limit of the cache, so a site that keeps seeing them stops going through the fallback.
+         *
+         * @param object The object to check
+         * @return Whether {@link #link(MolangObject, MethodHandle)} should be called for the object
+         */
+        protected boolean shouldLink(MolangObject object) {
+            if (this.depth >= MAX_DEPTH || getSwitchPoint(MolangUtil.unwrap(object)) != null) {
+                return true;
+            }
+            this.miss();
+            return false;
+        }
+
+        private synchronized void miss() {
+            if (++this.depth >= MAX_DEPTH) {
+                this.setTarget(this.uncached);
+            }
+        }
+
+        /**
+         * Adds the specified handle to the front of the inline cache, guarded by the identity of the object.
+         *
+         * @param object The object the handle was resolved from
+         * @param hit    The handle to invoke when the same object is passed into this site
+         */
+        protected synchronized void link(MolangObject object, MethodHandle hit) {
+            if (this.depth >= MAX_DEPTH) {
+                // Too many objects are going through this site, so stop caching
+                this.setTarget(this.uncached);
+                return;
+            }
+
+            MolangObject key = MolangUtil.unwrap(object);
+            SwitchPoint switchPoint = getSwitchPoint(key);
+            if (switchPoint == null) {
+                this.miss();
+                return;
+            }
+
+            MethodHandle test = IS_CACHED.bindTo(new WeakReference<>(key));
+            MethodHandle current = this.getTarget();
+            this.setTarget(MethodHandles.guardWithTest(test, switchPoint.guardWithTest(hit, this.fallback), current));
+            this.depth++;
+        }
+    }
+
+    private static class GetCallSite extends CachingCallSite {
+
+        private final MethodHandle lookup;
+        private final String name;
+        private final MolangFailureCounter failures;
+
+        private GetCallSite(MethodType type, String name, @Nullable MolangFailureCounter failures) {
+            this(type, failures != null ? MethodHandles.insertArguments(GET_OR_ZERO, 0, failures, name) : MethodHandles.insertArguments(GET, 1, name), name, failures);
+        }
+
+        private GetCallSite(MethodType type, MethodHandle lookup, String name, @Nullable MolangFailureCounter failures) {
+            super(type, lookup);
+            this.lookup = lookup;
+            this.name = name;
+            this.failures = failures;
+            this.setFallback(GET_FALLBACK.bindTo(this));
+        }
+
+        private MolangExpression fallback(MolangObject object) throws Throwable {
+            MolangExpression expression = (MolangExpression) this.lookup.invokeExact(object);
+            // Unknown values are never cached, so they are found as soon as they are added
+            if ((this.failures == null || object.has(this.name)) && this.shouldLink(object)) {
+                this.link(object, MethodHandles.dropArguments(MethodHandles.constant(MolangExpression.class, expression), 0, MolangObject.class));
+            }
+            return expression;
+        }
+    }
+
+    private static class SetCallSite extends CachingCallSite {
+
+        private final String name;
+        private final MolangFailureCounter failures;
+
+        private SetCallSite(MethodType type, String name, @Nullable MolangFailureCounter failures) {
+            super(type, failures != null ? MethodHandles.insertArguments(SET_IF_MUTABLE, 0, failures, name) : MethodHandles.insertArguments(SET, 1, name));
+            this.name = name;
+            this.failures = failures;
+            this.setFallback(SET_FALLBACK.bindTo(this));
+        }
+
+        private void fallback(MolangObject object, float value) throws MolangRuntimeException {
+            if (this.failures != null && !object.isMutable()) {
+                fail(this.failures, object, "writable variable", this.name);
+                return;
+            }
+
+            MolangVariable variable = object.getVariable(this.name);
+            if (this.shouldLink(object)) {
+                this.link(object, MethodHandles.dropArguments(SET_VALUE.bindTo(variable), 0, MolangObject.class));
+            }
+            variable.setValue(value);
+        }
+    }
+
+    private static class FunctionCallSite extends CachingCallSite {
+
+        private final String function;
+        private final String fullKey;
+        private final int parameters;
+        private final MolangFailureCounter failures;
+
+        private FunctionCallSite(MethodType type, String function, String fullKey, @Nullable MolangFailureCounter failures) {
+            super(type, (failures != null ? MethodHandles.insertArguments(CALL_OR_ZERO, 0, failures, function, fullKey) : MethodHandles.insertArguments(CALL, 0, function, fullKey))
+                    .asCollector(float[].class, type.parameterCount() - 2));
+            this.function = function;
+            this.fullKey = fullKey;
+            this.parameters = type.parameterCount() - 2;
+            this.failures = failures;
+            this.setFallback(CALL_FALLBACK.bindTo(this).asCollector(float[].class, this.parameters));
+        }
+
+        private float fallback(MolangObject object, MolangEnvironment environment, float[] arguments) throws MolangException {
+            MolangExpression expression;
+            if (this.failures != null) {
+                expression = MolangUtil.findFunction(object, this.function, this.fullKey);
+                if (expression == null) {
+                    fail(this.failures, object, "function", this.fullKey);
+                    return 0.0F;
+                }
+            } else {
+                expression = MolangUtil.getFunction(object, this.function, this.fullKey);
+            }
+            if (!this.shouldLink(object)) {
+                return invoke(expression, environment, arguments);
+            }
+
+            MethodHandle hit;
+            if (expression instanceof MolangStaticFunctionNode node && node.handle().type().parameterCount() == this.parameters) {
+                hit = MethodHandles.dropArguments(node.handle(), 0, MolangObject.class, MolangEnvironment.class);
+            } else if (this.parameters < INVOKE_ARITY.length) {
+                hit = MethodHandles.dropArguments(INVOKE_ARITY[this.parameters].bindTo(expression), 0, MolangObject.class);
+            } else {
+                hit = MethodHandles.dropArguments(MethodHandles.insertArguments(INVOKE, 0, expression).asCollector(float[].class, this.parameters), 0, MolangObject.class);
+            }
+            this.link(object, hit);
+
+            return invoke(expression, environment, arguments);
+        }
+    }
+}
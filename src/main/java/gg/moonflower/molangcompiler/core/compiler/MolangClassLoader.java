@@ -0,0 +1,134 @@
+package gg.moonflower.molangcompiler.core.compiler;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Defines one generation of expression classes for a {@link BytecodeCompiler}.</p>
+ * <p>Classes can only be unloaded together with their loader, so every expression is tracked with a weak reference.
+ * Once a generation is retired, it is unloaded as soon as the last expression defined in it is collected.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangClassLoader extends ClassLoader {
+
+    static {
+        // Lock per class name instead of on the whole loader, so many threads can compile at once
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final BytecodeCompiler owner;
+    private final ReferenceQueue<Object> queue;
+    private final Set<ExpressionReference> expressions;
+    private final Map<String, Integer> sizes;
+    private final AtomicInteger definedClasses;
+    private final AtomicLong definedBytes;
+    private final AtomicLong liveBytes;
+
+    public MolangClassLoader(BytecodeCompiler owner, ClassLoader parent) {
+        super(parent);
+        this.owner = owner;
+        this.queue = new ReferenceQueue<>();
+        this.expressions = ConcurrentHashMap.newKeySet();
+        this.sizes = new ConcurrentHashMap<>();
+        this.definedClasses = new AtomicInteger();
+        this.definedBytes = new AtomicLong();
+        this.liveBytes = new AtomicLong();
+    }
+
+    /**
+     * Defines a new class in this generation.
+     *
+     * @param name The internal name of the class
+     * @param data The class file
+     * @return The defined class
+     */
+    public Class<?> define(String name, byte[] data) {
+        Class<?> definedClass = this.defineClass(name.replace('/', '.'), data, 0, data.length);
+        this.sizes.put(definedClass.getName(), data.length);
+        this.definedClasses.incrementAndGet();
+        this.definedBytes.addAndGet(data.length);
+        return definedClass;
+    }
+
+    /**
+     * Starts tracking the only instance of a class defined by {@link #define(String, byte[])}.
+     *
+     * @param expression The instance to track
+     */
+    public void track(Object expression) {
+        Integer size = this.sizes.remove(expression.getClass().getName());
+        if (size == null) {
+            return;
+        }
+
+        this.poll();
+        this.expressions.add(new ExpressionReference(expression, this.queue, size));
+        this.liveBytes.addAndGet(size);
+    }
+
+    private void poll() {
+        Reference<?> reference;
+        while ((reference = this.queue.poll()) != null) {
+            if (this.expressions.remove(reference)) {
+                this.liveBytes.addAndGet(-((ExpressionReference) reference).size);
+            }
+        }
+    }
+
+    /**
+     * @return The compiler this generation belongs to
+     */
+    public BytecodeCompiler getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * @return The number of classes defined in this generation
+     */
+    public int getDefinedClasses() {
+        return this.definedClasses.get();
+    }
+
+    /**
+     * @return The size of every class file defined in this generation
+     */
+    public long getDefinedBytes() {
+        return this.definedBytes.get();
+    }
+
+    /**
+     * @return The number of expressions in this generation that have not been collected yet
+     */
+    public int getLiveClasses() {
+        this.poll();
+        return this.expressions.size();
+    }
+
+    /**
+     * @return The class file size of every expression in this generation that has not been collected yet
+     */
+    public long getLiveBytes() {
+        this.poll();
+        return this.liveBytes.get();
+    }
+
+    private static class ExpressionReference extends WeakReference<Object> {
+
+        private final int size;
+
+        private ExpressionReference(Object referent, ReferenceQueue<Object> queue, int size) {
+            super(referent, queue);
+            this.size = size;
+        }
+    }
+}
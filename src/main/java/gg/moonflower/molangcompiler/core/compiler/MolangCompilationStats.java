@@ -0,0 +1,83 @@
+package gg.moonflower.molangcompiler.core.compiler;
+
+import gg.moonflower.molangcompiler.api.MolangCompilationListener;
+import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.core.jfr.MolangCompileEvent;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Records the time spent in each stage of a single compilation.
+ * Every stage measures the time since the previous stage ended, so stages that run more than once add up.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangCompilationStats {
+
+    private final String source;
+    private final MolangCompileEvent event;
+    private long last;
+    private long lexNanos;
+    private long parseNanos;
+    private long generateNanos;
+    private long writeNanos;
+    private long defineNanos;
+    private int bytecodeSize;
+    private int localSlots;
+    private boolean constant;
+
+    public MolangCompilationStats(String source) {
+        this.source = source;
+        this.event = new MolangCompileEvent();
+        this.event.begin();
+        this.last = System.nanoTime();
+    }
+
+    private long lap() {
+        long now = System.nanoTime();
+        long time = now - this.last;
+        this.last = now;
+        return time;
+    }
+
+    public void lexed() {
+        this.lexNanos += this.lap();
+    }
+
+    public void parsed() {
+        this.parseNanos += this.lap();
+    }
+
+    public void generated(int localSlots) {
+        this.generateNanos += this.lap();
+        this.localSlots = Math.max(this.localSlots, localSlots);
+    }
+
+    public void written(int bytecodeSize) {
+        this.writeNanos += this.lap();
+        this.bytecodeSize += bytecodeSize;
+    }
+
+    public void defined() {
+        this.defineNanos += this.lap();
+    }
+
+    public void folded() {
+        this.generateNanos += this.lap();
+        this.constant = true;
+    }
+
+    /**
+     * Records the end of compilation in JDK Flight Recorder.
+     *
+     * @param failed Whether compilation failed
+     */
+    public void finish(boolean failed) {
+        this.event.finish(this.source, this.bytecodeSize, this.constant, failed);
+    }
+
+    public MolangCompilationListener.Report createReport(@Nullable MolangSyntaxException error) {
+        return new MolangCompilationListener.Report(this.source, this.lexNanos, this.parseNanos, this.generateNanos, this.writeNanos, this.defineNanos, this.bytecodeSize, this.localSlots, this.constant, error);
+    }
+}
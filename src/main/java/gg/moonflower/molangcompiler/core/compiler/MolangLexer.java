@@ -99,6 +99,8 @@ public final class MolangLexer {
         RIGHT_PARENTHESIS("\\)"),
         LEFT_BRACE("\\{"),
         RIGHT_BRACE("\\}"),
+        LEFT_BRACKET("\\["),
+        RIGHT_BRACKET("\\]"),
         DOT("\\."),
         COMMA("\\,"),
         EQUAL("="),
@@ -123,7 +125,7 @@ public final class MolangLexer {
         }
 
         public boolean isOutOfScope() {
-            return this == RIGHT_PARENTHESIS || this == RIGHT_BRACE || this == COMMA;
+            return this == RIGHT_PARENTHESIS || this == RIGHT_BRACE || this == RIGHT_BRACKET || this == COMMA;
         }
     }
 }
@@ -0,0 +1,219 @@
+package gg.moonflower.molangcompiler.core.compiler;
+
+import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.core.ast.ArrayGetNode;
+import gg.moonflower.molangcompiler.core.ast.BinaryConditionalNode;
+import gg.moonflower.molangcompiler.core.ast.BinaryOperation;
+import gg.moonflower.molangcompiler.core.ast.BinaryOperationNode;
+import gg.moonflower.molangcompiler.core.ast.BreakNode;
+import gg.moonflower.molangcompiler.core.ast.CompoundNode;
+import gg.moonflower.molangcompiler.core.ast.ConstNode;
+import gg.moonflower.molangcompiler.core.ast.ContinueNode;
+import gg.moonflower.molangcompiler.core.ast.FunctionNode;
+import gg.moonflower.molangcompiler.core.ast.LoopNode;
+import gg.moonflower.molangcompiler.core.ast.MathNode;
+import gg.moonflower.molangcompiler.core.ast.MathOperation;
+import gg.moonflower.molangcompiler.core.ast.NegateNode;
+import gg.moonflower.molangcompiler.core.ast.Node;
+import gg.moonflower.molangcompiler.core.ast.ReturnNode;
+import gg.moonflower.molangcompiler.core.ast.ScopeNode;
+import gg.moonflower.molangcompiler.core.ast.TernaryOperationNode;
+import gg.moonflower.molangcompiler.core.ast.ThisNode;
+import gg.moonflower.molangcompiler.core.ast.VariableGetNode;
+import gg.moonflower.molangcompiler.core.ast.VariableSetNode;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static gg.moonflower.molangcompiler.core.compiler.MolangNodeWriter.*;
+
+/**
+ * <p>Reads expressions written by {@link MolangNodeWriter}.</p>
+ * <p>Only the header and names are read up front. Expressions are read straight from the buffer when requested, so a memory-mapped file
+ * can hold many expressions without copying them onto the heap.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangNodeReader {
+
+    private static final BinaryOperation[] BINARY_OPERATIONS = BinaryOperation.values();
+    private static final MathOperation[] MATH_OPERATIONS = MathOperation.values();
+    /**
+     * Limits how deep trees can be nested, so a corrupt file cannot overflow the stack.
+     */
+    private static final int MAX_DEPTH = 512;
+
+    private final ByteBuffer buffer;
+    private final String[] strings;
+    private final int count;
+    private final int offsets;
+    private final int body;
+
+    /**
+     * Reads the header of the specified buffer. The position of the buffer is not changed.
+     *
+     * @param buffer The buffer to read from
+     * @throws MolangSyntaxException If the buffer is not in the expected format
+     */
+    public MolangNodeReader(ByteBuffer buffer) throws MolangSyntaxException {
+        this.buffer = buffer.duplicate();
+        try {
+            if (this.buffer.getInt() != MAGIC) {
+                throw new MolangSyntaxException("Not a MoLang expression file");
+            }
+            int version = this.buffer.get();
+            // Versions only add tags, so older files can still be read
+            if (version < 1 || version > VERSION) {
+                throw new MolangSyntaxException("Unsupported MoLang expression file version " + version + ", expected at most " + VERSION);
+            }
+
+            // Lengths are checked against the remaining data, so corrupt files cannot request huge arrays
+            this.strings = new String[readLength(this.buffer)];
+            for (int i = 0; i < this.strings.length; i++) {
+                byte[] data = new byte[readLength(this.buffer)];
+                this.buffer.get(data);
+                this.strings[i] = new String(data, StandardCharsets.UTF_8);
+            }
+
+            this.count = this.buffer.getInt();
+            if (this.count < 0) {
+                throw new MolangSyntaxException("Invalid expression count: " + this.count);
+            }
+            this.offsets = this.buffer.position();
+            this.body = Math.addExact(this.offsets, Math.multiplyExact(this.count, Integer.BYTES));
+            if (this.body > this.buffer.limit()) {
+                throw new MolangSyntaxException("Expected " + this.count + " expressions");
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ArithmeticException | IllegalArgumentException e) {
+            throw new MolangSyntaxException("Unexpected end of MoLang expression file", e);
+        }
+    }
+
+    /**
+     * @return The number of expressions in the buffer
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Reads a single expression. This can be called from any number of threads at once.
+     *
+     * @param index The index of the expression to read
+     * @return The parsed expression
+     * @throws MolangSyntaxException If the expression is not in the expected format
+     */
+    public Node read(int index) throws MolangSyntaxException {
+        if (index < 0 || index >= this.count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + this.count + " expressions");
+        }
+
+        ByteBuffer buffer = this.buffer.duplicate();
+        try {
+            buffer.position(this.body + buffer.getInt(this.offsets + index * Integer.BYTES));
+            return this.readNode(buffer, 0);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new MolangSyntaxException("Unexpected end of expression " + index, e);
+        }
+    }
+
+    private Node readNode(ByteBuffer buffer, int depth) throws MolangSyntaxException {
+        if (depth > MAX_DEPTH) {
+            throw new MolangSyntaxException("Expression is nested too deeply");
+        }
+
+        int tag = buffer.get();
+        return switch (tag) {
+            case CONST -> new ConstNode(buffer.getFloat());
+            case VARIABLE_GET -> new VariableGetNode(this.readString(buffer), this.readString(buffer));
+            case VARIABLE_SET -> {
+                String object = this.readString(buffer);
+                String name = this.readString(buffer);
+                boolean returnValue = buffer.get() != 0;
+                yield new VariableSetNode(object, name, this.readNode(buffer, depth + 1), returnValue);
+            }
+            case FUNCTION -> {
+                String object = this.readString(buffer);
+                String function = this.readString(buffer);
+                yield new FunctionNode(object, function, this.readNodes(buffer, readVarInt(buffer), depth));
+            }
+            case MATH -> {
+                int operation = buffer.get() & 0xFF;
+                if (operation >= MATH_OPERATIONS.length) {
+                    throw new MolangSyntaxException("Unknown math operation: " + operation);
+                }
+                yield new MathNode(MATH_OPERATIONS[operation], this.readNodes(buffer, readVarInt(buffer), depth));
+            }
+            case BINARY_OPERATION -> {
+                int operation = buffer.get() & 0xFF;
+                if (operation >= BINARY_OPERATIONS.length) {
+                    throw new MolangSyntaxException("Unknown binary operation: " + operation);
+                }
+                yield new BinaryOperationNode(BINARY_OPERATIONS[operation], this.readNode(buffer, depth + 1), this.readNode(buffer, depth + 1));
+            }
+            case BINARY_CONDITIONAL -> new BinaryConditionalNode(this.readNode(buffer, depth + 1), this.readNode(buffer, depth + 1));
+            case TERNARY_OPERATION -> new TernaryOperationNode(this.readNode(buffer, depth + 1), this.readNode(buffer, depth + 1), this.readNode(buffer, depth + 1));
+            case NEGATE -> new NegateNode(this.readNode(buffer, depth + 1));
+            case RETURN -> new ReturnNode(this.readNode(buffer, depth + 1));
+            case SCOPE -> new ScopeNode(this.readNode(buffer, depth + 1));
+            case COMPOUND -> new CompoundNode(this.readNodes(buffer, readVarInt(buffer), depth));
+            case LOOP -> new LoopNode(this.readNode(buffer, depth + 1), this.readNode(buffer, depth + 1));
+            case BREAK -> new BreakNode();
+            case CONTINUE -> new ContinueNode();
+            case THIS -> new ThisNode();
+            case ARRAY_GET -> {
+                String object = this.readString(buffer);
+                String name = this.readString(buffer);
+                yield new ArrayGetNode(object, name, this.readNode(buffer, depth + 1));
+            }
+            default -> throw new MolangSyntaxException("Unknown node: " + tag);
+        };
+    }
+
+    private Node[] readNodes(ByteBuffer buffer, int count, int depth) throws MolangSyntaxException {
+        // Every node takes at least one byte
+        if (count > buffer.remaining()) {
+            throw new MolangSyntaxException("Expected " + count + " nodes");
+        }
+        Node[] nodes = new Node[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = this.readNode(buffer, depth + 1);
+        }
+        return nodes;
+    }
+
+    private String readString(ByteBuffer buffer) throws MolangSyntaxException {
+        int id = readVarInt(buffer);
+        if (id >= this.strings.length) {
+            throw new MolangSyntaxException("Unknown name: " + id);
+        }
+        return this.strings[id];
+    }
+
+    private static int readLength(ByteBuffer buffer) throws MolangSyntaxException {
+        // Every string and every byte of a string takes at least one byte
+        int length = readVarInt(buffer);
+        if (length > buffer.remaining()) {
+            throw new MolangSyntaxException("Expected " + length + " bytes, but only " + buffer.remaining() + " remain");
+        }
+        return length;
+    }
+
+    private static int readVarInt(ByteBuffer buffer) throws MolangSyntaxException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new MolangSyntaxException("Invalid length");
+    }
+}
@@ -0,0 +1,238 @@
+package gg.moonflower.molangcompiler.core.compiler;
+
+import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.core.ast.ArrayGetNode;
+import gg.moonflower.molangcompiler.core.ast.BinaryConditionalNode;
+import gg.moonflower.molangcompiler.core.ast.BinaryOperation;
+import gg.moonflower.molangcompiler.core.ast.BinaryOperationNode;
+import gg.moonflower.molangcompiler.core.ast.BreakNode;
+import gg.moonflower.molangcompiler.core.ast.CompoundNode;
+import gg.moonflower.molangcompiler.core.ast.ConstNode;
+import gg.moonflower.molangcompiler.core.ast.ContinueNode;
+import gg.moonflower.molangcompiler.core.ast.FunctionNode;
+import gg.moonflower.molangcompiler.core.ast.LoopNode;
+import gg.moonflower.molangcompiler.core.ast.MathNode;
+import gg.moonflower.molangcompiler.core.ast.MathOperation;
+import gg.moonflower.molangcompiler.core.ast.NegateNode;
+import gg.moonflower.molangcompiler.core.ast.Node;
+import gg.moonflower.molangcompiler.core.ast.ReturnNode;
+import gg.moonflower.molangcompiler.core.ast.ScopeNode;
+import gg.moonflower.molangcompiler.core.ast.TernaryOperationNode;
+import gg.moonflower.molangcompiler.core.ast.ThisNode;
+import gg.moonflower.molangcompiler.core.ast.VariableGetNode;
+import gg.moonflower.molangcompiler.core.ast.VariableSetNode;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Writes parsed expressions into the binary format read by {@link MolangNodeReader}.</p>
+ * <p>The format starts with a header and a table of every object and variable name, followed by a table of offsets and the trees of every expression.
+ * Every expression can be read directly from its offset without reading the ones before it.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangNodeWriter {
+
+    static final int MAGIC = 0x4D4C4E47; // MLNG
+    /**
+     * The version of the format. This must change whenever tags or the order of {@link BinaryOperation} or {@link MathOperation} change.
+     * Version 2 added {@link #ARRAY_GET}.
+     */
+    static final int VERSION = 2;
+
+    static final int CONST = 0;
+    static final int VARIABLE_GET = 1;
+    static final int VARIABLE_SET = 2;
+    static final int FUNCTION = 3;
+    static final int MATH = 4;
+    static final int BINARY_OPERATION = 5;
+    static final int BINARY_CONDITIONAL = 6;
+    static final int TERNARY_OPERATION = 7;
+    static final int NEGATE = 8;
+    static final int RETURN = 9;
+    static final int SCOPE = 10;
+    static final int COMPOUND = 11;
+    static final int LOOP = 12;
+    static final int BREAK = 13;
+    static final int CONTINUE = 14;
+    static final int THIS = 15;
+    static final int ARRAY_GET = 16;
+
+    private final Map<String, Integer> stringIds;
+    private final List<String> strings;
+    private final List<Integer> offsets;
+    private final ByteArrayOutputStream body;
+    private final DataOutputStream output;
+
+    public MolangNodeWriter() {
+        this.stringIds = new HashMap<>();
+        this.strings = new ArrayList<>();
+        this.offsets = new ArrayList<>();
+        this.body = new ByteArrayOutputStream();
+        this.output = new DataOutputStream(this.body);
+    }
+
+    /**
+     * Adds an expression to the end of the output.
+     *
+     * @param node The expression to write
+     * @throws MolangSyntaxException If the expression contains a node that cannot be written
+     */
+    public void add(Node node) throws MolangSyntaxException {
+        this.offsets.add(this.output.size());
+        try {
+            this.write(node);
+        } catch (IOException e) {
+            throw new MolangSyntaxException("Failed to write expression '" + node + "'", e);
+        }
+    }
+
+    private void write(Node node) throws IOException, MolangSyntaxException {
+        if (node instanceof ConstNode constNode) {
+            this.output.writeByte(CONST);
+            this.output.writeFloat(constNode.value());
+            return;
+        }
+        if (node instanceof VariableGetNode get) {
+            this.output.writeByte(VARIABLE_GET);
+            this.writeString(get.object());
+            this.writeString(get.name());
+            return;
+        }
+        if (node instanceof ArrayGetNode get) {
+            this.output.writeByte(ARRAY_GET);
+            this.writeString(get.object());
+            this.writeString(get.name());
+            this.writeChildren(get);
+            return;
+        }
+        if (node instanceof VariableSetNode set) {
+            this.output.writeByte(VARIABLE_SET);
+            this.writeString(set.object());
+            this.writeString(set.name());
+            this.output.writeBoolean(set.hasValue());
+            this.writeChildren(set);
+            return;
+        }
+        if (node instanceof FunctionNode function) {
+            this.output.writeByte(FUNCTION);
+            this.writeString(function.object());
+            this.writeString(function.function());
+            this.writeVarInt(function.children().length);
+            this.writeChildren(function);
+            return;
+        }
+        if (node instanceof MathNode math) {
+            this.output.writeByte(MATH);
+            this.output.writeByte(math.function().ordinal());
+            this.writeVarInt(math.children().length);
+            this.writeChildren(math);
+            return;
+        }
+        if (node instanceof BinaryOperationNode operation) {
+            this.output.writeByte(BINARY_OPERATION);
+            this.output.writeByte(operation.operator().ordinal());
+            this.writeChildren(operation);
+            return;
+        }
+        if (node instanceof CompoundNode) {
+            this.output.writeByte(COMPOUND);
+            this.writeVarInt(node.children().length);
+            this.writeChildren(node);
+            return;
+        }
+
+        int tag;
+        if (node instanceof BinaryConditionalNode) {
+            tag = BINARY_CONDITIONAL;
+        } else if (node instanceof TernaryOperationNode) {
+            tag = TERNARY_OPERATION;
+        } else if (node instanceof NegateNode) {
+            tag = NEGATE;
+        } else if (node instanceof ReturnNode) {
+            tag = RETURN;
+        } else if (node instanceof ScopeNode) {
+            tag = SCOPE;
+        } else if (node instanceof LoopNode) {
+            tag = LOOP;
+        } else if (node instanceof BreakNode) {
+            tag = BREAK;
+        } else if (node instanceof ContinueNode) {
+            tag = CONTINUE;
+        } else if (node instanceof ThisNode) {
+            tag = THIS;
+        } else {
+            throw new MolangSyntaxException("Cannot write node: " + node.getClass().getName());
+        }
+        // Every other node has a fixed number of children
+        this.output.writeByte(tag);
+        this.writeChildren(node);
+    }
+
+    private void writeChildren(Node node) throws IOException, MolangSyntaxException {
+        for (Node child : node.children()) {
+            this.write(child);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        Integer id = this.stringIds.get(value);
+        if (id == null) {
+            id = this.strings.size();
+            this.stringIds.put(value, id);
+            this.strings.add(value);
+        }
+        this.writeVarInt(id);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        writeVarInt(this.output, value);
+    }
+
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * @return The header, names, offsets, and every expression added so far
+     */
+    public byte[] toByteArray() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.body.size() + 64);
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+
+            writeVarInt(output, this.strings.size());
+            for (String value : this.strings) {
+                byte[] data = value.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(output, data.length);
+                output.write(data);
+            }
+
+            // Offsets are fixed size, so any expression can be found without reading the others
+            output.writeInt(this.offsets.size());
+            for (int offset : this.offsets) {
+                output.writeInt(offset);
+            }
+            this.body.writeTo(output);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Byte array streams never throw
+            throw new IllegalStateException(e);
+        }
+    }
+}
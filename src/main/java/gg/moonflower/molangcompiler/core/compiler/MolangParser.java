@@ -1,6 +1,7 @@
 package gg.moonflower.molangcompiler.core.compiler;
 
 import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.core.ast.ArrayGetNode;
 import gg.moonflower.molangcompiler.core.ast.BinaryConditionalNode;
 import gg.moonflower.molangcompiler.core.ast.BinaryOperation;
 import gg.moonflower.molangcompiler.core.ast.BinaryOperationNode;
@@ -25,6 +26,7 @@ import org.jetbrains.annotations.ApiStatus;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.function.Predicate;
 
 /**
@@ -359,10 +361,8 @@ public final class MolangParser {
         expectLength(reader, 2);
 
         // object.name
-        String object = reader.peek().value();
-        if ("t".equalsIgnoreCase(object)) {
-            object = "temp";
-        }
+        // Object names are case-insensitive and have short aliases, so equivalent sources always build the same tree
+        String object = MolangAnalyzer.getCanonicalObject(reader.peek().value().toLowerCase(Locale.ROOT));
 
         reader.skip();
         expect(reader, MolangLexer.TokenType.DOT);
@@ -387,6 +387,21 @@ public final class MolangParser {
             return new MathNode(mathOperation);
         }
 
+        // obj.name[index]
+        if (reader.canRead() && reader.peek().type() == MolangLexer.TokenType.LEFT_BRACKET) {
+            if (mathOperation != null) {
+                throw error("Cannot index a math function", reader);
+            }
+            if ("temp".equals(object)) {
+                throw error("Cannot index a temp variable", reader);
+            }
+            reader.skip();
+            Node index = parseExpression(reader);
+            expect(reader, MolangLexer.TokenType.RIGHT_BRACKET);
+            reader.skip();
+            return new ArrayGetNode(object, name, index);
+        }
+
         // obj.name
         if (!reader.canRead() || reader.peek().type().isTerminating()) {
             if (mathOperation != null) {
@@ -0,0 +1,55 @@
+package gg.moonflower.molangcompiler.core.jfr;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Recorded for every expression compiled into a class.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+@Name("gg.moonflower.molangcompiler.Compile")
+@Label("MoLang Compile")
+@Category("MoLang")
+@Description("A MoLang expression was compiled")
+@StackTrace(false)
+public class MolangCompileEvent extends Event {
+
+    @Label("Source")
+    String source;
+
+    @Label("Source Hash")
+    int sourceHash;
+
+    @Label("Class Size")
+    @DataAmount
+    int classSize;
+
+    @Label("Constant")
+    @Description("Whether the expression was folded into a constant")
+    boolean constant;
+
+    @Label("Failed")
+    boolean failed;
+
+    /**
+     * Ends this event and commits it if it should be recorded.
+     *
+     * @param source    The source that was compiled
+     * @param classSize The size of the generated class file
+     * @param constant  Whether the expression was folded into a constant
+     * @param failed    Whether compilation failed
+     */
+    public void finish(String source, int classSize, boolean constant, boolean failed) {
+        this.end();
+        if (this.shouldCommit()) {
+            this.source = source;
+            this.sourceHash = source.hashCode();
+            this.classSize = classSize;
+            this.constant = constant;
+            this.failed = failed;
+            this.commit();
+        }
+    }
+}
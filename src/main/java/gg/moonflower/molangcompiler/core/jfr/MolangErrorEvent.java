@@ -0,0 +1,42 @@
+package gg.moonflower.molangcompiler.core.jfr;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Recorded when an instrumented expression throws an exception.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+@Name("gg.moonflower.molangcompiler.Error")
+@Label("MoLang Error")
+@Category("MoLang")
+@Description("An instrumented MoLang expression threw an exception")
+public class MolangErrorEvent extends Event {
+
+    @Label("Source")
+    String source;
+
+    @Label("Source Hash")
+    int sourceHash;
+
+    @Label("Message")
+    String message;
+
+    /**
+     * Records an error thrown by the specified expression.
+     *
+     * @param source The source of the expression
+     * @param error  The error thrown
+     */
+    public static void record(String source, Throwable error) {
+        MolangErrorEvent event = new MolangErrorEvent();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.sourceHash = source.hashCode();
+            event.message = error.getMessage();
+            event.commit();
+        }
+    }
+}
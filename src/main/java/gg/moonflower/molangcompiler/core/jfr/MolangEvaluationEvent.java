@@ -0,0 +1,53 @@
+package gg.moonflower.molangcompiler.core.jfr;
+
+import jdk.jfr.*;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Recorded when an instrumented expression takes longer than the slow evaluation threshold.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+@Name("gg.moonflower.molangcompiler.SlowEvaluation")
+@Label("MoLang Slow Evaluation")
+@Category("MoLang")
+@Description("An instrumented MoLang expression took longer than the slow evaluation threshold")
+@StackTrace(false)
+public class MolangEvaluationEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(MolangEvaluationEvent.class);
+
+    @Label("Source")
+    String source;
+
+    @Label("Source Hash")
+    int sourceHash;
+
+    @Label("Evaluation Time")
+    @Timespan
+    long evaluationTime;
+
+    /**
+     * @return Whether evaluations should be timed to record this event
+     */
+    public static boolean isRecording() {
+        return TYPE.isEnabled();
+    }
+
+    /**
+     * Records an evaluation of the specified expression.
+     *
+     * @param source         The source of the expression
+     * @param evaluationTime The time the evaluation took in nanoseconds
+     */
+    public static void record(String source, long evaluationTime) {
+        MolangEvaluationEvent event = new MolangEvaluationEvent();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.sourceHash = source.hashCode();
+            event.evaluationTime = evaluationTime;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * <p>Stores values that compiled expressions read by index, for example <code>array.textures[q.variant]</code>.</p>
+ * <p>The array is not copied, so changes to it are seen by every expression. Evaluating the array without an index returns the first value.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangArrayNode implements MolangExpression {
+
+    private final float[] values;
+
+    public MolangArrayNode(float[] values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Arrays must contain at least one value");
+        }
+        this.values = values;
+    }
+
+    /**
+     * @return The values backing this array
+     */
+    public float[] getValues() {
+        return this.values;
+    }
+
+    @Override
+    public float get(@Nullable MolangEnvironment environment) {
+        return this.values[0];
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.values);
+    }
+}
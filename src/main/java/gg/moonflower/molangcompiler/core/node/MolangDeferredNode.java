@@ -0,0 +1,84 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.core.MolangCompilerImpl;
+import gg.moonflower.molangcompiler.core.ast.Node;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * <p>Holds a parsed expression until it is first evaluated, then compiles it and forwards every call to the compiled expression.</p>
+ * <p>The tree and compiler are released once compiled, so only the compiled expression is kept alive.</p>
+ * <p>Forwarding costs one extra call per evaluation. The forwarding call is shared by every lazy expression, so it sees every generated class and is not inlined once more than a few are in use.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangDeferredNode implements MolangDelegatingNode {
+
+    private final String source;
+    private MolangCompilerImpl compiler;
+    private Node node;
+    private volatile MolangExpression delegate;
+
+    public MolangDeferredNode(MolangCompilerImpl compiler, Node node) {
+        this.source = node.toString();
+        this.compiler = compiler;
+        this.node = node;
+    }
+
+    @Override
+    public float get(MolangEnvironment environment) throws MolangRuntimeException {
+        MolangExpression delegate = this.delegate;
+        if (delegate == null) {
+            delegate = this.compile();
+        }
+        return delegate.get(environment);
+    }
+
+    private synchronized MolangExpression compile() throws MolangRuntimeException {
+        if (this.delegate == null) {
+            try {
+                this.delegate = this.compiler.compile(this.node);
+            } catch (MolangSyntaxException e) {
+                throw new MolangRuntimeException("Failed to compile expression '" + this.source + "'", e);
+            }
+            this.compiler = null;
+            this.node = null;
+        }
+        return this.delegate;
+    }
+
+    @Override
+    public @Nullable MolangExpression getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * @return Whether the expression has been compiled yet
+     */
+    public boolean isCompiled() {
+        return this.delegate != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof MolangExpression && this.source.equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return this.source.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+}
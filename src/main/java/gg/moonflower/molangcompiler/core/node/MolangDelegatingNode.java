@@ -0,0 +1,19 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An expression that forwards evaluation to another expression, such as a lazily compiled or memoized expression.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public interface MolangDelegatingNode extends MolangExpression {
+
+    /**
+     * @return The expression calls are forwarded to or <code>null</code> if there is none yet
+     */
+    @Nullable MolangExpression getDelegate();
+}
@@ -0,0 +1,119 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>The results of per-epoch functions for one root environment. Layers of a runtime share the cache of their root, because they share its epoch.</p>
+ * <p>The cache is shared by all threads without locking, so two threads asking for the same new arguments at once may both run the function.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public final class MolangEpochCache {
+
+    private final Map<Object, Results> results;
+
+    public MolangEpochCache() {
+        this.results = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Retrieves the results of the specified function in the specified epoch. Results from any other epoch are dropped.
+     *
+     * @param function The function to get the results of
+     * @param epoch    The current epoch
+     * @return The results by arguments
+     */
+    public Map<Key, Float> getResults(Object function, long epoch) {
+        Results results = this.results.get(function);
+        if (results == null || results.epoch != epoch) {
+            // Whichever thread sees the new epoch first replaces the results, the others drop their stale copy
+            results = new Results(epoch);
+            this.results.put(function, results);
+        }
+        return results.values;
+    }
+
+    private record Results(long epoch, Map<Key, Float> values) {
+
+        private Results(long epoch) {
+            this(epoch, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * The arguments of one function call. Keys used for lookups are reused, so only keys that are stored in the cache are copied.
+     */
+    public static final class Key {
+
+        private float[] parameters;
+        private int count;
+        private int hash;
+
+        public Key() {
+            this.parameters = new float[8];
+        }
+
+        private Key(float[] parameters, int hash) {
+            this.parameters = parameters;
+            this.count = parameters.length;
+            this.hash = hash;
+        }
+
+        /**
+         * Replaces the arguments of this key with the parameters loaded into the environment.
+         *
+         * @param environment The environment to read parameters from
+         * @param params      The number of parameters required or <code>-1</code> to read all loaded parameters
+         * @throws MolangRuntimeException If there are not enough parameters loaded
+         */
+        public void load(MolangEnvironment environment, int params) throws MolangRuntimeException {
+            int count = params < 0 ? environment.getParameters() : params;
+            if (count > this.parameters.length) {
+                this.parameters = Arrays.copyOf(this.parameters, Math.max(count, this.parameters.length * 2));
+            }
+
+            int hash = 1;
+            for (int i = 0; i < count; i++) {
+                if (!environment.hasParameter(i)) {
+                    throw new MolangRuntimeException("Function requires " + count + " parameters");
+                }
+                float value = environment.getParameter(i);
+                this.parameters[i] = value;
+                hash = 31 * hash + Float.floatToIntBits(value);
+            }
+            this.count = count;
+            this.hash = hash;
+        }
+
+        /**
+         * @return A copy of this key that is not changed by later loads
+         */
+        public Key copy() {
+            return new Key(Arrays.copyOf(this.parameters, this.count), this.hash);
+        }
+
+        /**
+         * @return The arguments of this key. Only valid for copies, because the array of a reused key can be longer than the arguments
+         */
+        public float[] getParameters() {
+            return this.parameters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && this.hash == key.hash && Arrays.equals(this.parameters, 0, this.count, key.parameters, 0, key.count);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.MolangRuntime;
+import gg.moonflower.molangcompiler.api.bridge.MolangJavaFunction;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A function that always returns the same result for the same arguments during an environment epoch.
+ * Results are cached by argument tuple in the root runtime, so runtimes with unrelated epochs never see each other's results.
+ * Looking up a cached result does not allocate.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangEpochFunctionNode extends MolangFunctionNode {
+
+    private final int params;
+    private final MolangJavaFunction consumer;
+    private final Map<MolangEnvironment, MolangEpochCache> caches;
+
+    public MolangEpochFunctionNode(int params, MolangJavaFunction consumer) {
+        super(params, consumer);
+        this.params = params;
+        this.consumer = consumer;
+        this.caches = Collections.synchronizedMap(new WeakHashMap<>());
+    }
+
+    @Override
+    public float get(MolangEnvironment environment) throws MolangRuntimeException {
+        long epoch = environment.getEpoch();
+        if (epoch < 0) {
+            return super.get(environment);
+        }
+
+        MolangEpochCache cache;
+        MolangEpochCache.Key key;
+        if (environment instanceof MolangRuntime runtime) {
+            cache = runtime.getEpochCache();
+            key = runtime.getFunctionContext().getKey();
+        } else {
+            // Other environments have no place to store results, so they are kept here until the environment is collected
+            cache = this.caches.computeIfAbsent(environment, unused -> new MolangEpochCache());
+            key = new MolangEpochCache.Key();
+        }
+        key.load(environment, this.params);
+
+        Map<MolangEpochCache.Key, Float> results = cache.getResults(this, epoch);
+        Float value = results.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        MolangEpochCache.Key stored = key.copy();
+        float result = this.consumer.resolve(new MolangJavaFunction.Context(stored.getParameters()));
+        results.putIfAbsent(stored, result);
+        return result;
+    }
+
+    @Override
+    public MolangExpression getCopy() {
+        return new MolangEpochFunctionNode(this.params, this.consumer);
+    }
+}
@@ -0,0 +1,50 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.bridge.FloatSupplier;
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * A value computed at most once per environment epoch.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangEpochNode implements MolangExpression {
+
+    private final FloatSupplier value;
+    private volatile Result result;
+
+    public MolangEpochNode(FloatSupplier value) {
+        this.value = value;
+    }
+
+    @Override
+    public float get(MolangEnvironment environment) {
+        long epoch = environment.getEpoch();
+        if (epoch < 0) {
+            return this.value.getAsFloat();
+        }
+        // The epoch and value are published together so other threads never see a value from another epoch
+        Result result = this.result;
+        if (result == null || result.epoch != epoch) {
+            result = new Result(epoch, this.value.getAsFloat());
+            this.result = result;
+        }
+        return result.value;
+    }
+
+    @Override
+    public MolangExpression getCopy() {
+        return new MolangEpochNode(this.value);
+    }
+
+    @Override
+    public String toString() {
+        return Float.toString(this.value.getAsFloat());
+    }
+
+    private record Result(long epoch, float value) {
+    }
+}
@@ -0,0 +1,87 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.bridge.MolangJavaFunction;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Arrays;
+
+/**
+ * A function context that is reused for every java function called from one runtime, so calling functions does not allocate.
+ * If a function calls another function while it is running, the nested call gets its own context.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public final class MolangFunctionContext extends MolangJavaFunction.Context {
+
+    private static final float[] EMPTY = new float[0];
+
+    private float[] parameters;
+    private int count;
+    private boolean active;
+    private MolangEpochCache.Key key;
+
+    public MolangFunctionContext() {
+        super(EMPTY);
+        this.parameters = new float[8];
+    }
+
+    /**
+     * @return The key reused to look up cached results of per-epoch functions called from this runtime
+     */
+    public MolangEpochCache.Key getKey() {
+        if (this.key == null) {
+            this.key = new MolangEpochCache.Key();
+        }
+        return this.key;
+    }
+
+    /**
+     * Calls the specified function with the parameters loaded into the environment.
+     *
+     * @param function    The function to call
+     * @param environment The environment to read parameters from
+     * @param params      The number of parameters required or <code>-1</code> to read all loaded parameters
+     * @return The result of the function
+     * @throws MolangRuntimeException If there are not enough parameters loaded or the function fails
+     */
+    public float resolve(MolangJavaFunction function, MolangEnvironment environment, int params) throws MolangRuntimeException {
+        if (this.active) {
+            return function.resolve(new MolangJavaFunction.Context(MolangFunctionNode.getParameters(environment, params)));
+        }
+
+        int count = params < 0 ? environment.getParameters() : params;
+        if (count > this.parameters.length) {
+            this.parameters = Arrays.copyOf(this.parameters, Math.max(count, this.parameters.length * 2));
+        }
+        for (int i = 0; i < count; i++) {
+            if (!environment.hasParameter(i)) {
+                throw new MolangRuntimeException("Function requires " + count + " parameters");
+            }
+            this.parameters[i] = environment.getParameter(i);
+        }
+
+        this.count = count;
+        this.active = true;
+        try {
+            return function.resolve(this);
+        } finally {
+            this.active = false;
+        }
+    }
+
+    @Override
+    public float get(int parameter) throws MolangRuntimeException {
+        if (parameter < 0 || parameter >= this.count) {
+            throw new MolangRuntimeException("Invalid parameter: " + parameter);
+        }
+        return this.parameters[parameter];
+    }
+
+    @Override
+    public int getParameters() {
+        return this.count;
+    }
+}
@@ -2,6 +2,7 @@ package gg.moonflower.molangcompiler.core.node;
 
 import gg.moonflower.molangcompiler.api.MolangEnvironment;
 import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.MolangRuntime;
 import gg.moonflower.molangcompiler.api.bridge.MolangJavaFunction;
 import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
 import org.jetbrains.annotations.ApiStatus;
@@ -22,14 +23,29 @@ public class MolangFunctionNode implements MolangExpression {
 
     @Override
     public float get(MolangEnvironment environment) throws MolangRuntimeException {
+        if (environment instanceof MolangRuntime runtime) {
+            return runtime.getFunctionContext().resolve(this.consumer, environment, this.params);
+        }
+        return this.consumer.resolve(new MolangJavaFunction.Context(getParameters(environment, this.params)));
+    }
+
+    /**
+     * Reads the parameters loaded into the environment.
+     *
+     * @param environment The environment to read parameters from
+     * @param params      The number of parameters required or <code>-1</code> to read all loaded parameters
+     * @return A new array with the parameters
+     * @throws MolangRuntimeException If there are not enough parameters loaded
+     */
+    static float[] getParameters(MolangEnvironment environment, int params) throws MolangRuntimeException {
         float[] parameters;
-        if (this.params < 0) {
+        if (params < 0) {
             parameters = new float[environment.getParameters()];
             for (int i = 0; i < parameters.length; i++) {
                 parameters[i] = environment.getParameter(i);
             }
         } else {
-            parameters = new float[this.params];
+            parameters = new float[params];
             for (int i = 0; i < parameters.length; i++) {
                 if (!environment.hasParameter(i)) {
                     throw new MolangRuntimeException("Function requires " + parameters.length + " parameters");
@@ -37,6 +53,6 @@ public class MolangFunctionNode implements MolangExpression {
                 parameters[i] = environment.getParameter(i);
             }
         }
-        return this.consumer.resolve(new MolangJavaFunction.Context(parameters));
+        return parameters;
     }
 }
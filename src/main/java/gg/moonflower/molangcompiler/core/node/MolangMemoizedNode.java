@@ -0,0 +1,186 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import gg.moonflower.molangcompiler.api.object.MolangLibrary;
+import gg.moonflower.molangcompiler.api.object.MolangObject;
+import gg.moonflower.molangcompiler.core.MolangUtil;
+import gg.moonflower.molangcompiler.core.object.MolangVariableStorage;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * <p>Caches the result of a pure expression until any of the values it reads change.</p>
+ * <p>If every value read was a constant from a versioned storage, the cached result is returned as long as the environment still has the same objects
+ * and none of them changed version. Otherwise, every value is read again and the expression only runs if one of them is different.
+ * Objects that are not loaded are read as unset values, so they only fail if the expression actually reads them.</p>
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangMemoizedNode implements MolangDelegatingNode {
+
+    private final MolangExpression expression;
+    private final String[] objects;
+    private final String[] names;
+    private final boolean usesThis;
+
+    private volatile Entry entry;
+
+    public MolangMemoizedNode(MolangExpression expression, String[] objects, String[] names, boolean usesThis) {
+        this.expression = expression;
+        this.objects = objects;
+        this.names = names;
+        this.usesThis = usesThis;
+    }
+
+    @Override
+    public MolangExpression getDelegate() {
+        return this.expression;
+    }
+
+    @Override
+    public float get(MolangEnvironment environment) throws MolangRuntimeException {
+        // Entries are never modified once published, so threads sharing this node never wait on each other and may at worst compute the same result twice
+        Entry entry = this.entry;
+        float thisValue = environment.getThis();
+        WeakReference<MolangEnvironment> reference;
+        if (entry != null && entry.environment.get() == environment && (!this.usesThis || Float.floatToRawIntBits(thisValue) == entry.thisValue)) {
+            if (entry.stable && entry.isCurrent() && this.hasSameSources(environment, entry)) {
+                return entry.result;
+            }
+            if (!this.hasChanged(environment, entry)) {
+                if (entry.stable) {
+                    // Only the versions changed, so store them to skip reading inputs next time
+                    Entry refreshed = this.readInputs(environment, entry.environment, thisValue);
+                    refreshed.result = entry.result;
+                    this.entry = refreshed;
+                }
+                return entry.result;
+            }
+            reference = entry.environment;
+        } else {
+            reference = new WeakReference<>(environment);
+        }
+
+        Entry next = this.readInputs(environment, reference, thisValue);
+        next.result = this.expression.get(environment);
+        this.entry = next;
+        return next.result;
+    }
+
+    private boolean hasSameSources(MolangEnvironment environment, Entry entry) throws MolangRuntimeException {
+        // Objects can be replaced in the environment without changing the version of the old ones
+        for (int i = 0; i < this.objects.length; i++) {
+            if (this.readObject(environment, i) != entry.sources[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasChanged(MolangEnvironment environment, Entry entry) throws MolangRuntimeException {
+        for (int i = 0; i < this.objects.length; i++) {
+            MolangObject object = this.readObject(environment, i);
+            if (entry.sources[i] != object || entry.values[i] != Float.floatToRawIntBits(this.readValue(environment, object, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Entry readInputs(MolangEnvironment environment, WeakReference<MolangEnvironment> reference, float thisValue) throws MolangRuntimeException {
+        Entry entry = new Entry(reference, Float.floatToRawIntBits(thisValue), this.objects.length);
+        boolean stable = true;
+        for (int i = 0; i < this.objects.length; i++) {
+            MolangObject object = this.readObject(environment, i);
+            int version = getVersion(object);
+            if (object != null && object.has(this.names[i])) {
+                stable &= version != -1 && object.get(this.names[i]).isConstant();
+            } else {
+                stable = false;
+            }
+            entry.sources[i] = object;
+            entry.versions[i] = version;
+            entry.values[i] = Float.floatToRawIntBits(this.readValue(environment, object, i));
+        }
+        entry.stable = stable;
+        return entry;
+    }
+
+    private @Nullable MolangObject readObject(MolangEnvironment environment, int index) throws MolangRuntimeException {
+        // Inputs may only be read in branches that are not taken, so missing objects are treated as unset values instead of failing here
+        return environment.has(this.objects[index]) ? MolangUtil.unwrap(environment.get(this.objects[index])) : null;
+    }
+
+    private float readValue(MolangEnvironment environment, @Nullable MolangObject object, int index) throws MolangRuntimeException {
+        return object != null && object.has(this.names[index]) ? environment.resolve(object.get(this.names[index])) : Float.NaN;
+    }
+
+    private static int getVersion(@Nullable MolangObject object) {
+        if (object instanceof MolangVariableStorage storage) {
+            return storage.getVersion();
+        }
+        if (object instanceof MolangLibrary) {
+            return 0;
+        }
+        return -1;
+    }
+
+    /**
+     * The inputs and result of one evaluation. Entries are filled in before they are published and never modified after.
+     */
+    private static final class Entry {
+
+        private final WeakReference<MolangEnvironment> environment;
+        private final int thisValue;
+        private final MolangObject[] sources;
+        private final int[] versions;
+        private final int[] values;
+        private boolean stable;
+        private float result;
+
+        private Entry(WeakReference<MolangEnvironment> environment, int thisValue, int inputs) {
+            this.environment = environment;
+            this.thisValue = thisValue;
+            this.sources = new MolangObject[inputs];
+            this.versions = new int[inputs];
+            this.values = new int[inputs];
+        }
+
+        private boolean isCurrent() {
+            for (int i = 0; i < this.sources.length; i++) {
+                if (getVersion(this.sources[i]) != this.versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public MolangExpression getCopy() {
+        return new MolangMemoizedNode(this.expression.getCopy(), this.objects, this.names, this.usesThis);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MolangMemoizedNode)) return false;
+        MolangMemoizedNode that = (MolangMemoizedNode) o;
+        return this.expression.equals(that.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.expression.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.expression.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Evaluates to a fallback value until the expression it stands in for finishes compiling.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangPendingNode implements MolangDelegatingNode {
+
+    private final String source;
+    private final float fallback;
+    private volatile MolangExpression delegate;
+
+    public MolangPendingNode(String source, float fallback) {
+        this.source = source;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Starts forwarding every call to the compiled expression.
+     *
+     * @param expression The compiled expression
+     */
+    public void complete(MolangExpression expression) {
+        this.delegate = expression;
+    }
+
+    @Override
+    public @Nullable MolangExpression getDelegate() {
+        return this.delegate;
+    }
+
+    @Override
+    public float get(MolangEnvironment environment) throws MolangRuntimeException {
+        MolangExpression delegate = this.delegate;
+        return delegate != null ? delegate.get(environment) : this.fallback;
+    }
+
+    @Override
+    public String toString() {
+        MolangExpression delegate = this.delegate;
+        return delegate != null ? delegate.toString() : this.source;
+    }
+}
@@ -0,0 +1,66 @@
+package gg.moonflower.molangcompiler.core.node;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+/**
+ * A function backed by a method handle taking only float parameters. Compiled expressions link directly to the handle.
+ *
+ * @author Ocelot
+ */
+@ApiStatus.Internal
+public class MolangStaticFunctionNode implements MolangExpression {
+
+    private final MethodHandle handle;
+    private final MethodHandle spreader;
+
+    public MolangStaticFunctionNode(MethodHandle handle) {
+        MethodType type = handle.type();
+        if (type.returnType() != float.class) {
+            throw new IllegalArgumentException("Function must return float: " + type);
+        }
+        for (Class<?> parameter : type.parameterList()) {
+            if (parameter != float.class) {
+                throw new IllegalArgumentException("Function must only take float parameters: " + type);
+            }
+        }
+        this.handle = handle;
+        this.spreader = handle.asSpreader(float[].class, type.parameterCount());
+    }
+
+    @Override
+    public float get(MolangEnvironment environment) throws MolangRuntimeException {
+        float[] parameters = new float[this.handle.type().parameterCount()];
+        for (int i = 0; i < parameters.length; i++) {
+            if (!environment.hasParameter(i)) {
+                throw new MolangRuntimeException("Function requires " + parameters.length + " parameters");
+            }
+            parameters[i] = environment.getParameter(i);
+        }
+
+        try {
+            return (float) this.spreader.invokeExact(parameters);
+        } catch (MolangRuntimeException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new MolangRuntimeException(t);
+        }
+    }
+
+    /**
+     * @return The handle to invoke. It always returns a float and only takes float parameters
+     */
+    public MethodHandle handle() {
+        return this.handle;
+    }
+
+    @Override
+    public String toString() {
+        return "function" + this.handle.type();
+    }
+}
@@ -5,10 +5,14 @@ import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
 import gg.moonflower.molangcompiler.api.object.MolangObject;
 import gg.moonflower.molangcompiler.core.node.MolangFunctionNode;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.SwitchPoint;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Ocelot
@@ -16,21 +20,93 @@ import java.util.Map;
 @ApiStatus.Internal
 public class MolangVariableStorage implements MolangObject {
 
+    /**
+     * Storages that keep changing shape are not worth caching, so stop handing out switch points after this many invalidations.
+     */
+    private static final int MAX_INVALIDATIONS = 8;
+
     private final Map<String, MolangExpression> storage;
     private final boolean allowMethods;
+    private final MolangVariableStorage parent;
+    private volatile SwitchPoint switchPoint;
+    private int invalidations;
+    private int version;
 
-    public MolangVariableStorage(boolean allowMethods) {
-        this.storage = new HashMap<>();
+    private MolangVariableStorage(Map<String, MolangExpression> storage, boolean allowMethods, @Nullable MolangVariableStorage parent) {
+        this.storage = storage;
         this.allowMethods = allowMethods;
+        this.parent = parent;
+    }
+
+    public MolangVariableStorage(boolean allowMethods) {
+        this(new HashMap<>(), allowMethods, null);
     }
 
     public MolangVariableStorage(MolangVariableStorage copy) {
-        this.storage = new HashMap<>(copy.storage);
-        this.allowMethods = copy.allowMethods;
+        this(new HashMap<>(copy.storage), copy.allowMethods, copy.parent);
+    }
+
+    /**
+     * Creates a storage that reads through to this storage for any values it does not have.
+     * Values with internal state are copied into the layer the first time they are accessed, so changes never leak back into this storage.
+     *
+     * @return A new storage layered on top of this one
+     */
+    public MolangVariableStorage layer() {
+        return new MolangVariableStorage(new HashMap<>(), this.allowMethods, this);
     }
 
     public void clear() {
-        this.storage.clear();
+        if (!this.storage.isEmpty()) {
+            this.storage.clear();
+            this.markChanged();
+        }
+    }
+
+    /**
+     * Retrieves the switch point compiled expressions use to cache lookups into this storage.
+     * It is invalidated the next time a value is added, replaced, or removed.
+     *
+     * @return The current switch point or <code>null</code> if lookups into this storage should not be cached
+     */
+    public synchronized @Nullable SwitchPoint getSwitchPoint() {
+        // Layers can change whenever the parent does, so they are never cached
+        if (this.parent == null && this.switchPoint == null && this.invalidations < MAX_INVALIDATIONS) {
+            this.switchPoint = new SwitchPoint();
+        }
+        return this.switchPoint;
+    }
+
+    /**
+     * Retrieves the version of this storage. The version changes every time a value is added, replaced, or removed.
+     * Changes to the internal state of a value, such as setting a variable, do not change the version.
+     *
+     * @return The current version of this storage
+     */
+    public int getVersion() {
+        return this.parent != null ? this.version + this.parent.getVersion() : this.version;
+    }
+
+    private void markChanged() {
+        this.version++;
+        this.invalidate();
+    }
+
+    private void invalidate() {
+        if (this.switchPoint == null) {
+            return;
+        }
+
+        SwitchPoint switchPoint;
+        synchronized (this) {
+            switchPoint = this.switchPoint;
+            if (switchPoint == null) {
+                return;
+            }
+            this.switchPoint = null;
+            this.invalidations++;
+        }
+        SwitchPoint.invalidateAll(new SwitchPoint[]{switchPoint});
     }
 
     @Override
@@ -38,12 +114,16 @@ public class MolangVariableStorage implements MolangObject {
         if (!this.allowMethods && value instanceof MolangFunctionNode) {
             throw new MolangRuntimeException("Cannot set functions on objects that do not allow functions");
         }
-        this.storage.put(name, value);
+        if (this.storage.put(name, value) != value) {
+            this.markChanged();
+        }
     }
 
     @Override
     public void remove(String name) throws MolangRuntimeException {
-        this.storage.remove(name);
+        if (this.storage.remove(name) != null) {
+            this.markChanged();
+        }
     }
 
     @Override
@@ -52,17 +132,32 @@ public class MolangVariableStorage implements MolangObject {
         if (expression != null) {
             return expression;
         }
+        if (this.parent != null && this.parent.has(name)) {
+            expression = this.parent.get(name);
+            MolangExpression copy = expression.getCopy();
+            if (copy != expression) {
+                // Copy on first access so the value can be modified without changing the parent
+                this.storage.put(name, copy);
+            }
+            return copy;
+        }
         throw new MolangRuntimeException("Unknown MoLang expression: " + name);
     }
 
     @Override
     public boolean has(String name) {
-        return this.storage.containsKey(name);
+        return this.storage.containsKey(name) || (this.parent != null && this.parent.has(name));
     }
 
     @Override
     public Collection<String> getKeys() {
-        return this.storage.keySet();
+        if (this.parent == null) {
+            return this.storage.keySet();
+        }
+
+        Set<String> keys = new HashSet<>(this.parent.getKeys());
+        keys.addAll(this.storage.keySet());
+        return keys;
     }
 
     @Override
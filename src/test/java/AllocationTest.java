@@ -0,0 +1,99 @@
+import com.sun.management.ThreadMXBean;
+import gg.moonflower.molangcompiler.api.MolangCompiler;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.MolangRuntime;
+import gg.moonflower.molangcompiler.api.bridge.MolangVariable;
+import gg.moonflower.molangcompiler.api.exception.MolangException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes sure evaluating compiled expressions does not allocate once they have been run a few times.
+ *
+ * @author Ocelot
+ */
+public class AllocationTest {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 10_000;
+    /**
+     * Allows for a few one-time allocations, such as the JIT finishing compilation, while still failing if every evaluation allocates.
+     */
+    private static final long MAX_BYTES = 1024;
+
+    private static float pick(float value) {
+        return value * 2;
+    }
+
+    @Test
+    public void testSteadyStateEvaluation() throws Throwable {
+        MolangRuntime.Builder builder = MolangRuntime.runtime();
+        builder.setQuery("a", 3);
+        builder.setQuery("b", 0.5F);
+        builder.setQuery("pick", 1, context -> context.get(0) * 2);
+        builder.setQuery("pick_any", -1, context -> context.get(0) + context.getParameters());
+        builder.setQuery("pick_static", MolangExpression.function(MethodHandles.lookup().findStatic(AllocationTest.class, "pick", MethodType.methodType(float.class, float.class))));
+        builder.setQuery("pick_epoch", MolangExpression.perEpochFunction(1, context -> context.get(0) * 3));
+        builder.setVariable("speed", MolangVariable.create(2));
+        MolangRuntime runtime = builder.create();
+        runtime.setEpoch(0);
+        MolangRuntime layer = runtime.layer();
+
+        Map<String, String> expressions = new LinkedHashMap<>();
+        expressions.put("constant", "4 * 4 + 2");
+        expressions.put("query", "q.a * q.b + math.sin(q.a * 90)");
+        expressions.put("conditional", "q.a > 1 ? q.a : q.b");
+        expressions.put("temp", "t.x = q.a; t.y = t.x * 2; return t.y;");
+        expressions.put("variable", "v.speed = v.speed + 1; return v.speed;");
+        expressions.put("loop", "t.x = 0; loop(8, { t.x = t.x + q.a; }); return t.x;");
+        expressions.put("function", "q.pick(q.a) + q.pick(2)");
+        expressions.put("function_any", "q.pick_any(q.a, 1, 2)");
+        expressions.put("static_function", "q.pick_static(q.a)");
+        expressions.put("epoch_function", "q.pick_epoch(q.a) + q.pick_epoch(2)");
+        expressions.put("coalesce", "(v.missing ?? q.a) + (v.speed ?? 1)");
+        expressions.put("random", "math.random(0, 1)");
+
+        MolangCompiler compiler = MolangCompiler.create();
+        List<String> allocating = new ArrayList<>();
+        for (Map.Entry<String, String> entry : expressions.entrySet()) {
+            MolangExpression expression = compiler.compile(entry.getValue());
+            long runtimeBytes = measure(runtime, expression);
+            if (runtimeBytes > MAX_BYTES) {
+                allocating.add(entry.getKey() + " allocated " + runtimeBytes + " bytes");
+            }
+            long layerBytes = measure(layer, expression);
+            if (layerBytes > MAX_BYTES) {
+                allocating.add(entry.getKey() + " allocated " + layerBytes + " bytes in a layer");
+            }
+        }
+        Assertions.assertEquals(List.of(), allocating);
+    }
+
+    private static long measure(MolangRuntime runtime, MolangExpression expression) throws MolangException {
+        ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        float sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += runtime.resolve(expression);
+        }
+
+        long start = bean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += runtime.resolve(expression);
+        }
+        long allocated = bean.getThreadAllocatedBytes(thread) - start;
+
+        // Keeps the results alive so the evaluations cannot be removed
+        Assertions.assertFalse(Float.isNaN(sink));
+        return allocated;
+    }
+}
@@ -1,10 +1,17 @@
+import gg.moonflower.molangcompiler.api.MolangCompiler;
 import gg.moonflower.molangcompiler.api.MolangExpression;
 import gg.moonflower.molangcompiler.api.MolangRuntime;
+import gg.moonflower.molangcompiler.api.MolangRuntimePool;
+import gg.moonflower.molangcompiler.api.MolangScheduler;
+import gg.moonflower.molangcompiler.api.bridge.MolangVariable;
+import gg.moonflower.molangcompiler.api.exception.MolangException;
 import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
 import gg.moonflower.molangcompiler.api.object.MolangObject;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.ForkJoinPool;
+
 public class MolangBuilderTest {
 
     @Test
@@ -33,4 +40,73 @@ public class MolangBuilderTest {
         Assertions.assertEquals(1, copy1.get("global").getKeys().size());
         Assertions.assertEquals(2, copy.get("global").getKeys().size());
     }
+
+    @Test
+    public void testLayer() throws MolangException {
+        MolangRuntime parent = MolangRuntime.runtime()
+                .setQuery("speed", 2)
+                .setVariable("count", MolangExpression.of(MolangVariable.create(1)))
+                .create();
+        MolangRuntime layer = parent.layer();
+
+        MolangExpression expression = MolangCompiler.create().compile("v.count = v.count + q.speed; return v.count;");
+        Assertions.assertEquals(3, layer.resolve(expression));
+        Assertions.assertEquals(5, layer.resolve(expression));
+        Assertions.assertEquals(3, parent.resolve(expression));
+
+        Assertions.assertSame(parent.get("q"), layer.get("query"));
+        Assertions.assertTrue(layer.has("global"));
+
+        // Layers cannot be cached, so the call sites give up on caching them without changing the results
+        for (int i = 0; i < 32; i++) {
+            Assertions.assertEquals(3, parent.layer().resolve(expression));
+        }
+    }
+
+    @Test
+    public void testPool() throws MolangException {
+        MolangRuntimePool pool = new MolangRuntimePool(MolangRuntime.runtime().setVariable("age", 0).create(), 4);
+        MolangExpression expression = MolangCompiler.create().compile("v.age = v.age + 1; return v.age;");
+
+        MolangRuntime first = pool.acquire();
+        Assertions.assertEquals(1, first.resolve(expression));
+        Assertions.assertEquals(2, first.resolve(expression));
+        pool.release(first);
+
+        MolangRuntime second = pool.acquire();
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, second.resolve(expression));
+
+        MolangRuntimePool.Statistics statistics = pool.getStatistics();
+        Assertions.assertEquals(2, statistics.acquired());
+        Assertions.assertEquals(1, statistics.created());
+        Assertions.assertEquals(0, statistics.idle());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> pool.release(MolangRuntime.runtime().create()));
+
+        pool.release(second);
+        Assertions.assertThrows(IllegalStateException.class, () -> pool.release(second));
+        Assertions.assertNotSame(pool.acquire(), pool.acquire());
+    }
+
+    @Test
+    public void testScheduler() throws MolangException {
+        MolangRuntime template = MolangRuntime.runtime().setVariable("age", 0).create();
+        MolangRuntime shared = template.layer();
+        MolangExpression expression = MolangCompiler.create().compile("v.age = v.age + 1; return v.age;");
+
+        int count = 1000;
+        MolangExpression[] expressions = new MolangExpression[count];
+        MolangRuntime[] environments = new MolangRuntime[count];
+        for (int i = 0; i < count; i++) {
+            expressions[i] = expression;
+            // Every other job uses the same runtime, so those must run in order
+            environments[i] = i % 2 == 0 ? shared : template.layer();
+        }
+
+        float[] output = new float[count];
+        new MolangScheduler(ForkJoinPool.commonPool(), 16).evaluate(expressions, environments, output);
+        for (int i = 0; i < count; i++) {
+            Assertions.assertEquals(i % 2 == 0 ? i / 2 + 1 : 1, output[i]);
+        }
+    }
 }
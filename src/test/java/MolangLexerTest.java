@@ -38,4 +38,12 @@ public class MolangLexerTest {
         System.out.println(Arrays.toString(tokens));
         Assertions.assertEquals(10, tokens.length);
     }
+
+    @Test
+    public void testArray() throws MolangSyntaxException {
+        String input = "array.textures[q.variant]";
+        MolangLexer.Token[] tokens = MolangLexer.createTokens(input);
+        System.out.println(Arrays.toString(tokens));
+        Assertions.assertEquals(8, tokens.length);
+    }
 }
@@ -1,15 +1,42 @@
 import com.google.common.base.Stopwatch;
+import gg.moonflower.molangcompiler.api.MolangAnalysis;
+import gg.moonflower.molangcompiler.api.MolangBatchExpression;
+import gg.moonflower.molangcompiler.api.MolangCompilationListener;
+import gg.moonflower.molangcompiler.api.MolangCompileService;
 import gg.moonflower.molangcompiler.api.MolangCompiler;
 import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.MolangExpressionGroup;
+import gg.moonflower.molangcompiler.api.MolangFailures;
+import gg.moonflower.molangcompiler.api.MolangMetrics;
 import gg.moonflower.molangcompiler.api.MolangRuntime;
+import gg.moonflower.molangcompiler.api.bridge.MolangJavaFunction;
 import gg.moonflower.molangcompiler.api.bridge.MolangVariable;
 import gg.moonflower.molangcompiler.api.exception.MolangException;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
 import gg.moonflower.molangcompiler.api.exception.MolangSyntaxException;
+import gg.moonflower.molangcompiler.api.object.MolangLibrary;
+import gg.moonflower.molangcompiler.api.object.MolangObject;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 public class MolangTest {
 
@@ -397,4 +424,635 @@ public class MolangTest {
         float result = runtime.resolve(loop);
         Assertions.assertEquals(4, result);
     }
+
+    @Test
+    void testCachedLookup() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangExpression expression = compiler.compile("q.value + math.abs(v.value)");
+
+        MolangRuntime.Builder builder = MolangRuntime.runtime();
+        builder.setQuery("value", 1);
+        builder.setVariable("value", -2);
+        MolangRuntime first = builder.create();
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(3, first.resolve(expression));
+        }
+
+        builder.setQuery("value", 4);
+        Assertions.assertEquals(6, first.resolve(expression));
+
+        MolangRuntime second = MolangRuntime.runtime()
+                .setQuery("value", 10)
+                .setVariable("value", 1)
+                .create();
+        Assertions.assertEquals(11, second.resolve(expression));
+        Assertions.assertEquals(6, first.resolve(expression));
+    }
+
+    @Test
+    void testStaticFunction() throws Exception {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangExpression expression = compiler.compile("lib.add(1, q.value) * lib.double(3) + lib.count(1, 2, 3)");
+        MethodHandle doubleHandle = MethodHandles.lookup().findStatic(MolangTest.class, "doubleValue", MethodType.methodType(float.class, float.class));
+
+        MolangRuntime runtime = MolangRuntime.runtime()
+                .setQuery("value", 2)
+                .loadLibrary("lib", new MolangLibrary() {
+                    @Override
+                    protected void populate(BiConsumer<String, MolangExpression> consumer) {
+                        consumer.accept("add", MolangExpression.function(Float.class, "sum", 2));
+                        consumer.accept("double", MolangExpression.function(doubleHandle));
+                        consumer.accept("count", MolangExpression.function(MolangJavaFunction.Context::getParameters));
+                    }
+
+                    @Override
+                    protected String getName() {
+                        return "lib";
+                    }
+                })
+                .create();
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(21, runtime.resolve(expression));
+        }
+    }
+
+    private static float doubleValue(float value) {
+        return value * 2;
+    }
+
+    @Test
+    void testBatch() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangBatchExpression expression = compiler.compileBatch("""
+                temp.sum = 0;
+                loop(2, {
+                    temp.sum = temp.sum + q.anim_time;
+                });
+                return temp.sum * query.speed + v.offset;
+                """, "query.anim_time", "q.speed");
+
+        MolangRuntime runtime = MolangRuntime.runtime()
+                .setVariable("offset", 1)
+                .create();
+        float[][] inputs = {
+                {1, 2, 3, 4},
+                {1, 2, 0.5F, 0}
+        };
+        float[] output = new float[4];
+        expression.evaluate(runtime, inputs, output);
+        Assertions.assertArrayEquals(new float[]{3, 9, 4, 1}, output);
+
+        Assertions.assertThrows(MolangRuntimeException.class, () -> expression.evaluate(runtime, inputs, new float[5]));
+    }
+
+    @Test
+    void testBatchReturnInLoop() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangBatchExpression expression = compiler.compileBatch("loop(3, { loop(2, { if (q.a > 1) { return q.a; } }); }); return 7;", "q.a");
+        MolangRuntime runtime = MolangRuntime.runtime().create();
+
+        float[] output = new float[3];
+        expression.evaluate(runtime, new float[][]{{1, 2, 3}}, output);
+        Assertions.assertArrayEquals(new float[]{7, 2, 3}, output);
+
+        MolangExpressionGroup group = compiler.compileGroup("loop(3, { return q.b; }); return 7;", "q.b + 1");
+        runtime.edit().setQuery("b", 4);
+        float[] groupOutput = new float[2];
+        group.evaluate(runtime, groupOutput);
+        Assertions.assertArrayEquals(new float[]{4, 5}, groupOutput);
+    }
+
+    @Test
+    void testGroup() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangExpressionGroup group = compiler.compileGroup(
+                "temp.angle = q.anim_time * 2; return math.cos(temp.angle) * v.scale;",
+                "q.anim_time > 1 ? math.sin(temp.angle) : -1",
+                "v.scale = v.scale + 1; return v.scale;"
+        );
+
+        MolangRuntime runtime = MolangRuntime.runtime()
+                .setQuery("anim_time", 90)
+                .setVariable("scale", 2)
+                .create();
+        float[] output = new float[3];
+        group.evaluate(runtime, output);
+        Assertions.assertEquals(3, group.size());
+        Assertions.assertEquals(-2, output[0], 0.0001F);
+        Assertions.assertEquals(0, output[1], 0.0001F);
+        Assertions.assertEquals(3, output[2]);
+
+        Assertions.assertThrows(MolangRuntimeException.class, () -> group.evaluate(runtime, new float[2]));
+    }
+
+    @Test
+    void testVariableWriteback() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangExpression expression = compiler.compile("v.count = v.count + 1; v.created = v.count * 2; return v.count;");
+
+        MolangRuntime runtime = MolangRuntime.runtime()
+                .setVariable("count", 0)
+                .create();
+        MolangObject variables = runtime.get("variable");
+        Assertions.assertEquals(1, runtime.resolve(expression));
+
+        MolangExpression count = variables.get("count");
+        MolangExpression created = variables.get("created");
+        Assertions.assertTrue(count instanceof MolangVariable);
+        for (int i = 0; i < 10; i++) {
+            runtime.resolve(expression);
+        }
+        Assertions.assertSame(count, variables.get("count"));
+        Assertions.assertSame(created, variables.get("created"));
+        Assertions.assertEquals(22, runtime.resolve(created));
+    }
+
+    @Test
+    void testMemoized() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        Assertions.assertEquals(Set.of("query.speed", "variable.scale", "query.pick"), compiler.analyze("temp.a = q.speed; return temp.a * v.scale + q.pick(1);").getReads());
+
+        int[] calls = {0};
+        MolangVariable scale = MolangVariable.create(2);
+        MolangRuntime runtime = MolangRuntime.runtime()
+                .setQuery("speed", 3)
+                .setQuery("counted", MolangExpression.of(() -> {
+                    calls[0]++;
+                    return 1.0F;
+                }))
+                .setVariable("scale", MolangExpression.of(scale))
+                .create();
+
+        MolangExpression expression = compiler.compileMemoized("q.speed * v.scale");
+        Assertions.assertEquals(6, runtime.resolve(expression));
+        scale.setValue(4);
+        Assertions.assertEquals(12, runtime.resolve(expression));
+        runtime.edit().setQuery("speed", 1);
+        Assertions.assertEquals(4, runtime.resolve(expression));
+
+        MolangExpression counted = compiler.compileMemoized("math.sqrt(q.counted) + q.speed");
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals(2, runtime.resolve(counted));
+        }
+        Assertions.assertEquals(5, calls[0]); // Dynamic values are read every time, but the expression only runs once
+
+        MolangExpression branch = compiler.compileMemoized("q.speed > 0 ? v.scale : missing.value");
+        Assertions.assertEquals(4, runtime.resolve(branch));
+        Assertions.assertEquals(4, runtime.resolve(branch));
+
+        // Replacing an object does not change the version of the old one, so the cached result must not be used
+        runtime.edit().loadLibrary("foo", constantLibrary("foo", 1));
+        MolangExpression replaced = compiler.compileMemoized("foo.val * 10 + q.speed");
+        Assertions.assertEquals(11, runtime.resolve(replaced));
+        Assertions.assertEquals(11, runtime.resolve(replaced));
+        runtime.edit().loadLibrary("foo", constantLibrary("foo", 7));
+        Assertions.assertEquals(71, runtime.resolve(replaced));
+
+        MolangExpression impure = compiler.compileMemoized("v.scale = v.scale + 1");
+        Assertions.assertFalse(impure.getClass().getSimpleName().startsWith("MolangMemoized"));
+    }
+
+    private static MolangLibrary constantLibrary(String name, float value) {
+        return new MolangLibrary() {
+            @Override
+            protected void populate(BiConsumer<String, MolangExpression> consumer) {
+                consumer.accept("val", MolangExpression.of(value));
+            }
+
+            @Override
+            protected String getName() {
+                return name;
+            }
+        };
+    }
+
+    @Test
+    void testEpoch() throws MolangException {
+        int[] distanceCalls = {0};
+        int[] pickCalls = {0};
+        MolangRuntime runtime = MolangRuntime.runtime()
+                .setQuery("distance", MolangExpression.perEpoch(() -> {
+                    distanceCalls[0]++;
+                    return 10.0F;
+                }))
+                .setQuery("pick", MolangExpression.perEpochFunction(1, context -> {
+                    pickCalls[0]++;
+                    return context.get(0) * 2;
+                }))
+                .create();
+        MolangExpression expression = MolangCompiler.create().compile("q.distance + q.pick(1) + q.pick(2) + q.pick(1)");
+
+        // Epochs are not tracked yet, so everything is computed every time
+        Assertions.assertEquals(18, runtime.resolve(expression));
+        Assertions.assertEquals(1, distanceCalls[0]);
+        Assertions.assertEquals(3, pickCalls[0]);
+
+        runtime.nextEpoch();
+        Assertions.assertEquals(18, runtime.resolve(expression));
+        Assertions.assertEquals(18, runtime.resolve(expression));
+        Assertions.assertEquals(2, distanceCalls[0]);
+        Assertions.assertEquals(5, pickCalls[0]);
+
+        runtime.nextEpoch();
+        Assertions.assertEquals(18, runtime.resolve(expression));
+        Assertions.assertEquals(3, distanceCalls[0]);
+        Assertions.assertEquals(7, pickCalls[0]);
+
+        // Results are kept by the root runtime, so runtimes at the same epoch do not share them and layers do
+        MolangExpression shared = MolangExpression.perEpochFunction(1, context -> {
+            pickCalls[0]++;
+            return context.get(0) * 2;
+        });
+        MolangRuntime first = MolangRuntime.runtime().setQuery("pick", shared).create();
+        MolangRuntime second = MolangRuntime.runtime().setQuery("pick", shared).create();
+        first.setEpoch(1);
+        second.setEpoch(1);
+        MolangExpression pick = MolangCompiler.create().compile("q.pick(3)");
+        Assertions.assertEquals(6, first.resolve(pick));
+        Assertions.assertEquals(6, second.resolve(pick));
+        Assertions.assertEquals(6, first.resolve(pick));
+        Assertions.assertEquals(6, first.layer().resolve(pick));
+        Assertions.assertEquals(9, pickCalls[0]);
+    }
+
+    @Test
+    void testAnalysis() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangAnalysis simple = compiler.analyze("v.speed = q.speed * 2; return math.sin(v.speed) + q.pick(1);");
+        Assertions.assertEquals(Set.of("query.speed", "variable.speed", "query.pick"), simple.getReads());
+        Assertions.assertEquals(Set.of("variable.speed"), simple.getWrites());
+        Assertions.assertEquals(Set.of("math.sin", "query.pick"), simple.getCalls());
+        Assertions.assertFalse(simple.usesRandom());
+        Assertions.assertFalse(simple.hasLoops());
+
+        MolangAnalysis loop = compiler.analyze("temp.a = 0; loop(10, {temp.a = temp.a + math.random(0, 1);}); return temp.a;");
+        Assertions.assertTrue(loop.getReads().isEmpty());
+        Assertions.assertTrue(loop.getWrites().isEmpty());
+        Assertions.assertTrue(loop.usesRandom());
+        Assertions.assertTrue(loop.hasLoops());
+        Assertions.assertTrue(loop.getCost() > simple.getCost());
+        Assertions.assertTrue(compiler.analyze("1 + 2").getCost() < simple.getCost());
+        Assertions.assertEquals(Integer.MAX_VALUE, compiler.analyze("loop(1000000000, { loop(1000000000, { loop(1000000000, { q.a; }); }); })").getCost());
+    }
+
+    @Test
+    void testConcurrentCompile() throws Exception {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangRuntime runtime = MolangRuntime.runtime().create();
+        float[] results = new float[256];
+        Thread[] threads = new Thread[results.length];
+        MolangException[] errors = new MolangException[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    results[index] = runtime.resolve(compiler.compile("temp.a = " + index + "; return temp.a * 2 + math.abs(0);"));
+                } catch (MolangException e) {
+                    errors[index] = e;
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            Assertions.assertNull(errors[i]);
+            Assertions.assertEquals(i * 2, results[i]);
+        }
+    }
+
+    @Test
+    void testInstrumented() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create(MolangCompiler.DEFAULT_FLAGS | MolangCompiler.INSTRUMENT_FLAG);
+        MolangExpression hot = compiler.compile("return q.a > 0 ? q.a * 2 : 1;");
+        MolangExpression cold = compiler.compile("q.a + 1");
+        MolangRuntime runtime = MolangRuntime.runtime().setQuery("a", 3).create();
+
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(6, runtime.resolve(hot));
+        }
+        Assertions.assertEquals(4, runtime.resolve(cold));
+
+        MolangMetrics metrics = compiler.getMetrics();
+        Assertions.assertEquals(2, metrics.getEntries().size());
+        MolangMetrics.Entry top = metrics.getTopByCalls(1).get(0);
+        Assertions.assertEquals(hot.toString(), top.source());
+        Assertions.assertEquals(100, top.calls());
+        Assertions.assertEquals(2, top.samples());
+
+        metrics.reset();
+        Assertions.assertEquals(0, metrics.getTopByCalls(1).get(0).calls());
+        Assertions.assertNull(MolangCompiler.create().getMetrics());
+        // Metrics only track expressions that are still in use
+        Assertions.assertEquals(4, runtime.resolve(cold));
+    }
+
+    @Test
+    void testCompilationListener() throws MolangException {
+        List<MolangCompilationListener.Report> reports = new ArrayList<>();
+        MolangCompilationListener listener = reports::add;
+        MolangCompiler compiler = MolangCompiler.create();
+        compiler.addListener(listener);
+
+        compiler.compile("temp.a = q.speed; return temp.a * 2;");
+        compiler.compile("4 * 4 + 2");
+        Assertions.assertThrows(MolangSyntaxException.class, () -> compiler.compile("q.speed +"));
+
+        Assertions.assertEquals(3, reports.size());
+        MolangCompilationListener.Report compiled = reports.get(0);
+        Assertions.assertFalse(compiled.failed());
+        Assertions.assertFalse(compiled.constant());
+        Assertions.assertTrue(compiled.bytecodeSize() > 0);
+        Assertions.assertTrue(compiled.localSlots() > 2);
+        Assertions.assertTrue(compiled.totalNanos() > 0);
+
+        MolangCompilationListener.Report constant = reports.get(1);
+        Assertions.assertTrue(constant.constant());
+        Assertions.assertEquals(0, constant.bytecodeSize());
+
+        MolangCompilationListener.Report failed = reports.get(2);
+        Assertions.assertTrue(failed.failed());
+        Assertions.assertEquals("q.speed +", failed.source());
+
+        Assertions.assertThrows(MolangSyntaxException.class, () -> compiler.compileBatch("q.speed", "speed"));
+        Assertions.assertEquals(4, reports.size());
+        Assertions.assertTrue(reports.get(3).failed());
+
+        compiler.removeListener(listener);
+        compiler.compile("1");
+        Assertions.assertEquals(4, reports.size());
+    }
+
+    @Test
+    void testFlightRecorderEvents() throws Exception {
+        MolangCompiler compiler = MolangCompiler.create(MolangCompiler.DEFAULT_FLAGS | MolangCompiler.INSTRUMENT_FLAG);
+        compiler.getMetrics().setSlowThreshold(0);
+        MolangRuntime runtime = MolangRuntime.runtime().setVariable("x", 16).create();
+
+        Path file = Files.createTempFile("molang", ".jfr");
+        MolangExpression expression;
+        MolangExpression missing;
+        try (Recording recording = new Recording()) {
+            recording.enable("gg.moonflower.molangcompiler.Compile");
+            recording.enable("gg.moonflower.molangcompiler.SlowEvaluation");
+            recording.enable("gg.moonflower.molangcompiler.Error");
+            recording.start();
+
+            expression = compiler.compile("math.sqrt(v.x)");
+            missing = compiler.compile("q.missing(1)");
+            runtime.resolve(expression);
+            Assertions.assertThrows(MolangException.class, () -> runtime.resolve(missing));
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<String> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            events.add(event.getEventType().getName() + ":" + event.getString("source"));
+        }
+        Files.delete(file);
+
+        Assertions.assertTrue(events.contains("gg.moonflower.molangcompiler.Compile:q.missing(1)"));
+        Assertions.assertTrue(events.contains("gg.moonflower.molangcompiler.SlowEvaluation:" + expression));
+        Assertions.assertTrue(events.contains("gg.moonflower.molangcompiler.Error:" + missing));
+    }
+
+    @Test
+    void testClassBudget() throws Exception {
+        MolangCompiler compiler = MolangCompiler.create();
+        compiler.setClassBudget(4);
+        MolangRuntime runtime = MolangRuntime.runtime().setVariable("x", 2).create();
+
+        MolangExpression survivor = compiler.compile("v.x * 100");
+        for (int i = 0; i < 15; i++) {
+            compiler.compile("v.x + " + i);
+        }
+
+        MolangCompiler.ClassStatistics statistics = compiler.getClassStatistics();
+        Assertions.assertEquals(16, statistics.definedClasses());
+        Assertions.assertTrue(statistics.definedBytes() > 0);
+
+        for (int i = 0; i < 10 && compiler.getClassStatistics().loaders() > 2; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        statistics = compiler.getClassStatistics();
+        Assertions.assertEquals(2, statistics.loaders());
+        Assertions.assertEquals(1, statistics.liveClasses());
+
+        MolangExpression refreshed = compiler.refresh(survivor);
+        Assertions.assertNotSame(survivor, refreshed);
+        Assertions.assertEquals(runtime.resolve(survivor), runtime.resolve(refreshed));
+        Assertions.assertSame(refreshed, compiler.refresh(refreshed));
+
+        // Wrappers are checked by the expression they forward to
+        compiler.setClassBudget(1);
+        MolangExpression lazy = compiler.compileLazy("v.x * 3");
+        MolangExpression memoized = compiler.compileMemoized("v.x * 4");
+        Assertions.assertEquals(6, runtime.resolve(lazy));
+        compiler.compile("v.x * 5");
+        MolangExpression refreshedLazy = compiler.refresh(lazy);
+        Assertions.assertNotSame(lazy, refreshedLazy);
+        Assertions.assertEquals(6, runtime.resolve(refreshedLazy));
+        MolangExpression refreshedMemoized = compiler.refresh(memoized);
+        Assertions.assertNotSame(memoized, refreshedMemoized);
+        Assertions.assertEquals(8, runtime.resolve(refreshedMemoized));
+
+        // The printed form of this tree parses to a different grouping, so it must not be used to compile again
+        MolangExpression grouped = compiler.compile("(q.a ? q.b : q.c) ? 10 : 20");
+        compiler.compile("v.x * 6");
+        MolangRuntime ternary = MolangRuntime.runtime().setQuery("a", 1).setQuery("b", 0).setQuery("c", 1).create();
+        MolangExpression refreshedGrouped = compiler.refresh(grouped);
+        Assertions.assertNotSame(grouped, refreshedGrouped);
+        Assertions.assertEquals(20, ternary.resolve(grouped));
+        Assertions.assertEquals(20, ternary.resolve(refreshedGrouped));
+    }
+
+    @Test
+    void testInterning() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangExpression expression = compiler.compile("q.a * 2 + V.b");
+        Assertions.assertSame(expression, compiler.compile("query.a*2 +  variable.b"));
+        Assertions.assertSame(expression, compiler.compile("Query.a * 2 + v.b"));
+        Assertions.assertNotSame(expression, compiler.compile("q.a * 2 + v.B"));
+        Assertions.assertEquals(2, compiler.getClassStatistics().definedClasses());
+
+        MolangRuntime runtime = MolangRuntime.runtime().setQuery("a", 3).setVariable("b", 1).create();
+        Assertions.assertEquals(7, runtime.resolve(expression));
+
+        // Both trees print the same, but are grouped differently
+        MolangExpression left = compiler.compile("(q.a ? q.b : q.c) ? 10 : 20");
+        MolangExpression right = compiler.compile("q.a ? q.b : (q.c ? 10 : 20)");
+        Assertions.assertNotSame(left, right);
+        MolangRuntime ternary = MolangRuntime.runtime().setQuery("a", 1).setQuery("b", 0).setQuery("c", 1).create();
+        Assertions.assertEquals(20, ternary.resolve(left));
+        Assertions.assertEquals(0, ternary.resolve(right));
+    }
+
+    @Test
+    void testEncode() throws MolangException {
+        String[] inputs = {
+                "q.a * 2 + math.clamp(v.b, 0, 1)",
+                "t.x = 0; loop(4, { t.x++; t.x >= 3 ? break; }); return t.x;",
+                "v.c = v.missing ?? 2; return q.a > 1 ? -v.c : this;",
+                "{ v.d = 1; }; v.e = q.fn(1, 2); return v.d + v.e;"
+        };
+        MolangCompiler compiler = MolangCompiler.create();
+        byte[] data = compiler.encode(inputs);
+        MolangExpression[] decoded = MolangCompiler.create().compileEncoded(ByteBuffer.wrap(data));
+        Assertions.assertEquals(inputs.length, decoded.length);
+
+        MolangRuntime runtime = MolangRuntime.runtime()
+                .setQuery("a", 3)
+                .setQuery("fn", 2, context -> context.get(0) + context.get(1))
+                .setVariable("b", 0.5F)
+                .create();
+        for (int i = 0; i < inputs.length; i++) {
+            MolangExpression expression = compiler.compile(inputs[i]);
+            Assertions.assertEquals(expression.toString(), decoded[i].toString());
+            Assertions.assertEquals(runtime.resolve(expression), runtime.resolve(decoded[i]));
+        }
+
+        data[4]++;
+        Assertions.assertThrows(MolangSyntaxException.class, () -> compiler.compileEncoded(ByteBuffer.wrap(data)));
+        Assertions.assertThrows(MolangSyntaxException.class, () -> compiler.compileEncoded(ByteBuffer.wrap(data, 0, 12)));
+
+        // A corrupt header must not allocate the lengths it claims
+        byte[] corrupt = {'M', 'L', 'N', 'G', 2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        Assertions.assertThrows(MolangSyntaxException.class, () -> compiler.compileEncoded(ByteBuffer.wrap(corrupt)));
+        byte[] corruptString = {'M', 'L', 'N', 'G', 2, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        Assertions.assertThrows(MolangSyntaxException.class, () -> compiler.compileEncoded(ByteBuffer.wrap(corruptString)));
+    }
+
+    @Test
+    void testCompileLazy() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangExpression lazy = compiler.compileLazy("q.a * 2");
+        Assertions.assertThrows(MolangSyntaxException.class, () -> compiler.compileLazy("q.a *"));
+        Assertions.assertEquals(0, compiler.getClassStatistics().definedClasses());
+        Assertions.assertTrue(compiler.compileLazy("4 * 4").isConstant());
+
+        MolangRuntime runtime = MolangRuntime.runtime().setQuery("a", 3).create();
+        Assertions.assertEquals(6, runtime.resolve(lazy));
+        Assertions.assertEquals(6, runtime.resolve(lazy));
+        Assertions.assertEquals(1, compiler.getClassStatistics().definedClasses());
+        Assertions.assertEquals(compiler.compile("q.a * 2"), lazy);
+    }
+
+    @Test
+    void testLenient() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create(MolangCompiler.DEFAULT_FLAGS | MolangCompiler.LENIENT_FLAG);
+        MolangExpression expression = compiler.compile("q.missing + v.unknown * 2 + unknown_object.x + q.no_function(1) + v.a + 3");
+        MolangRuntime runtime = MolangRuntime.runtime().setVariable("a", 1).create();
+
+        Assertions.assertEquals(4, runtime.resolve(expression));
+        Assertions.assertEquals(4, runtime.resolve(expression));
+        Assertions.assertEquals(8, MolangFailures.getCount(expression));
+
+        MolangExpression write = compiler.compile("v.b = 2; unknown_object.x = 3; return v.b;");
+        Assertions.assertEquals(2, runtime.resolve(write));
+        Assertions.assertEquals(1, MolangFailures.getCount(write));
+
+        // Values added later are found without recompiling
+        runtime.edit().setQuery("missing", 10);
+        Assertions.assertEquals(14, runtime.resolve(expression));
+        Assertions.assertThrows(MolangException.class, () -> runtime.resolve(MolangCompiler.create().compile("q.missing_value")));
+
+        // Wrappers report the count of the expression they forward to
+        MolangExpression lazy = compiler.compileLazy("v.nope + 1");
+        Assertions.assertEquals(1, runtime.resolve(lazy));
+        Assertions.assertEquals(1, runtime.resolve(lazy));
+        Assertions.assertEquals(2, MolangFailures.getCount(lazy));
+    }
+
+    @Test
+    void testLoopBudget() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        compiler.setLoopBudget(100);
+        MolangRuntime runtime = MolangRuntime.runtime().setVariable("x", 5).create();
+
+        Assertions.assertEquals(50, runtime.resolve(compiler.compile("t.x = 0; loop(10, { loop(5, { t.x = t.x + 1; }); }); return t.x;")));
+        Assertions.assertEquals(0, runtime.resolve(compiler.compile("v.x = 1; t.x = 0; loop(1000000000, { t.x = t.x + 1; }); return t.x;")));
+        Assertions.assertEquals(5, runtime.resolve(compiler.compile("v.x")), "Aborted evaluations must not write variables");
+
+        MolangExpressionGroup group = compiler.compileGroup("loop(1000000000, { loop(2, { t.y = 1; }); }); return 1;", "t.x = 0; loop(4, { t.x = t.x + 1; }); return t.x;");
+        float[] output = new float[2];
+        group.evaluate(runtime, output);
+        Assertions.assertArrayEquals(new float[]{0, 4}, output);
+    }
+
+    @Test
+    void testArray() throws MolangException {
+        MolangCompiler compiler = MolangCompiler.create();
+        MolangObject arrays = new MolangLibrary() {
+            @Override
+            protected void populate(BiConsumer<String, MolangExpression> consumer) {
+                consumer.accept("textures", MolangExpression.array(10, 20, 30));
+            }
+
+            @Override
+            protected String getName() {
+                return "array";
+            }
+        };
+        MolangRuntime runtime = MolangRuntime.runtime()
+                .loadLibrary("array", arrays)
+                .setQuery("variant", 1)
+                .setQuery("offsets", MolangExpression.array(1, 2))
+                .create();
+
+        Assertions.assertEquals(20, runtime.resolve(compiler.compile("array.textures[q.variant]")));
+        Assertions.assertEquals(32, runtime.resolve(compiler.compile("array.textures[q.variant + 1] + q.offsets[q.variant]")));
+        Assertions.assertEquals(10, runtime.resolve(compiler.compile("array.textures[-4]")));
+        Assertions.assertEquals(30, runtime.resolve(compiler.compile("array.textures[q.variant * 10]")));
+        Assertions.assertEquals(10, runtime.resolve(compiler.compile("array.textures")));
+        Assertions.assertThrows(MolangException.class, () -> runtime.resolve(compiler.compile("q.variant[0]")));
+        Assertions.assertThrows(MolangSyntaxException.class, () -> compiler.compile("t.x[0]"));
+        Assertions.assertEquals(0, runtime.resolve(MolangCompiler.create(MolangCompiler.DEFAULT_FLAGS | MolangCompiler.LENIENT_FLAG).compile("q.missing[2] + q.variant[0]")));
+
+        MolangExpression encoded = compiler.compileEncoded(ByteBuffer.wrap(compiler.encode("array.textures[2]")))[0];
+        Assertions.assertEquals(30, runtime.resolve(encoded));
+
+        // Arrays are shared, so memoized expressions must see changes to them
+        float[] values = {1, 2, 3};
+        runtime.edit().setQuery("values", MolangExpression.array(values));
+        MolangExpression memoized = compiler.compileMemoized("q.values[q.variant + 1]");
+        Assertions.assertEquals(3, runtime.resolve(memoized));
+        values[2] = 42;
+        Assertions.assertEquals(42, runtime.resolve(memoized));
+    }
+
+    @Test
+    void testCompileService() throws Exception {
+        MolangCompileService service = new MolangCompileService(MolangCompiler.create());
+        List<String> order = new ArrayList<>();
+        service.submit("q.a + 4", Integer.MIN_VALUE).thenAccept(expression -> order.add("lowest"));
+        service.submit("q.a + 1", 0).thenAccept(expression -> order.add("low"));
+        service.submit("q.a + 2", 5).thenAccept(expression -> order.add("high"));
+        CompletableFuture<MolangExpression> invalid = service.submit("q.a +", 0);
+        MolangExpression placeholder = service.submitPlaceholder("q.a * 10", 1, -1);
+
+        MolangRuntime runtime = MolangRuntime.runtime().setQuery("a", 2).create();
+        Assertions.assertEquals(-1, runtime.resolve(placeholder));
+        Assertions.assertEquals(0, service.tick(0));
+        Assertions.assertEquals(5, service.getPending());
+
+        Assertions.assertEquals(5, service.tick(Long.MAX_VALUE));
+        Assertions.assertEquals(List.of("high", "low", "lowest"), order);
+        Assertions.assertTrue(invalid.isCompletedExceptionally());
+        Assertions.assertEquals(20, runtime.resolve(placeholder));
+
+        CompletableFuture<MolangExpression> cancelled = service.submit("q.a + 3", 0);
+        Assertions.assertEquals(1, service.getPending());
+        cancelled.cancel(false);
+        Assertions.assertEquals(0, service.getPending());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MolangCompileService background = new MolangCompileService(MolangCompiler.create(), executor);
+            Assertions.assertEquals(4, runtime.resolve(background.submit("q.a * 2", 0).get(10, TimeUnit.SECONDS)));
+        } finally {
+            executor.shutdown();
+        }
+    }
 }